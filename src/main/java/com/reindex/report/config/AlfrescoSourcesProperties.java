@@ -0,0 +1,46 @@
+package com.reindex.report.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configurazione dei repository Alfresco sorgente (alfresco.sources.*).
+ * Se non è configurata alcuna sorgente viene usata la sorgente "default"
+ * costruita da content.service.* e scheduler.node-id.
+ * Passando a sorgenti con nome, 'legacy-source' indica a quale sorgente
+ * assegnare i dati già registrati come "default".
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "alfresco")
+public class AlfrescoSourcesProperties {
+
+    public static final String DEFAULT_SOURCE = "default";
+
+    private Map<String, Source> sources = new LinkedHashMap<>();
+
+    private String legacySource; // Sorgente a cui riassegnare i dati "default" (opzionale)
+
+    @Data
+    public static class Source {
+        private String url;
+        private String username;
+        private String password;
+        private List<String> nodeIds = new ArrayList<>(); // Nodi sincronizzati dallo scheduler
+
+        private int maxConcurrentRequests = 4; // Richieste HTTP contemporanee verso il repository
+        private double rateLimit = 10; // Richieste al secondo (0 = nessun limite)
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        private int importPoolSize = 2; // Thread dedicati alle importazioni della sorgente
+        private int importQueueCapacity = 20;
+    }
+}
@@ -0,0 +1,21 @@
+package com.reindex.report.controller;
+
+import com.reindex.report.service.UnknownSourceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Gestione comune degli errori di richiesta (es. sorgente Alfresco sconosciuta).
+ */
+@Slf4j
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(UnknownSourceException.class)
+    public ResponseEntity<String> handleUnknownSource(UnknownSourceException e) {
+        log.warn("Richiesta non valida: {}", e.getMessage());
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
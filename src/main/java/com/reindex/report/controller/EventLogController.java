@@ -1,11 +1,21 @@
 package com.reindex.report.controller;
 
+import com.reindex.report.dto.ChangeFeedDTO;
+import com.reindex.report.dto.ImportJobDTO;
+import com.reindex.report.service.AlfrescoSourceRegistry;
+import com.reindex.report.service.ChangeFeedService;
 import com.reindex.report.service.EventLogService;
+import com.reindex.report.service.ImportJob;
+import com.reindex.report.service.ImportJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
 
@@ -19,33 +29,80 @@ import java.util.Map;
 public class EventLogController {
 
     private final EventLogService eventLogService;
+    private final ImportJobService importJobService;
+    private final ChangeFeedService changeFeedService;
+    private final AlfrescoSourceRegistry sourceRegistry;
 
     /**
      * Recupera la lista degli eventi direttamente da Alfresco per un controllo
-     * rapido.
+     * rapido. Senza 'sorgente' usa la prima sorgente configurata.
      */
     @GetMapping("/alfresco/{nodeId}")
-    public ResponseEntity<List<Map<String, Object>>> getAlfrescoEvents(@PathVariable String nodeId) {
-        log.info("Richiesta visualizzazione eventi Alfresco per il nodo: {}", nodeId);
-        return ResponseEntity.ok(eventLogService.getEventsFromAlfresco(nodeId));
+    public ResponseEntity<List<Map<String, Object>>> getAlfrescoEvents(@PathVariable String nodeId,
+            @RequestParam(required = false) String sorgente) {
+        sorgente = sourceRegistry.resolve(sorgente).getName();
+        log.info("Richiesta visualizzazione eventi Alfresco ({}) per il nodo: {}", sorgente, nodeId);
+        return ResponseEntity.ok(eventLogService.getEventsFromAlfresco(sorgente, nodeId));
     }
 
     /**
-     * Avvia il processo di importazione e sincronizzazione degli eventi da Alfresco
-     * al database persistente.
+     * Change feed degli eventi salvati: restituisce gli eventi inseriti dopo il
+     * cursore (al massimo 'limit'). Se non ce ne sono attende fino a 'waitMs'
+     * millisecondi prima di rispondere con una lista vuota.
+     */
+    @GetMapping("/changes")
+    public DeferredResult<ChangeFeedDTO> getChanges(@RequestParam(defaultValue = "0") long cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "30000") long waitMs) {
+        log.debug("Richiesta change feed dal cursore {} (limit {}, attesa {} ms)", cursor, limit, waitMs);
+        return changeFeedService.poll(cursor, limit, waitMs);
+    }
+
+    /**
+     * Avvia in modo asincrono il processo di importazione e sincronizzazione degli
+     * eventi da Alfresco al database persistente.
+     * Se un'importazione dello stesso nodo è già in corso restituisce quel job.
      */
     @PostMapping("/import/{nodeId}")
-    public ResponseEntity<String> importEvents(@PathVariable String nodeId) {
-        log.info("Avvio procedura di importazione per il nodo: {}", nodeId);
-        try {
-            int count = eventLogService.importEventsWithoutDuplicates(nodeId);
-            String messaggio = String.format(
-                    "Sincronizzazione completata con successo. Processati %d nuovi eventi/aggiornamenti.", count);
-            return ResponseEntity.ok(messaggio);
-        } catch (Exception e) {
-            log.error("Errore critico durante l'importazione per il nodo {}: {}", nodeId, e.getMessage());
-            return ResponseEntity.internalServerError()
-                    .body("Si è verificato un errore durante l'importazione: " + e.getMessage());
-        }
+    public ResponseEntity<ImportJobDTO> importEvents(@PathVariable String nodeId,
+            @RequestParam(required = false) String sorgente) {
+        sorgente = sourceRegistry.resolve(sorgente).getName();
+        log.info("Avvio procedura di importazione per il nodo: {} ({})", nodeId, sorgente);
+        ImportJob job = importJobService.submit(sorgente, nodeId);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/events/import/jobs/" + job.getId()))
+                .body(job.toDTO());
+    }
+
+    /**
+     * Restituisce lo stato di avanzamento di un job di importazione.
+     */
+    @GetMapping("/import/jobs/{jobId}")
+    public ResponseEntity<ImportJobDTO> getImportJob(@PathVariable String jobId) {
+        return importJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(job.toDTO()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Stream Server-Sent Events con l'avanzamento del job (pagine recuperate,
+     * eventi scritti, fase corrente).
+     */
+    @GetMapping(path = "/import/jobs/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamImportJob(@PathVariable String jobId) {
+        return importJobService.subscribe(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Richiede l'annullamento di un job di importazione in corso.
+     */
+    @DeleteMapping("/import/jobs/{jobId}")
+    public ResponseEntity<ImportJobDTO> cancelImportJob(@PathVariable String jobId) {
+        log.info("Richiesta di annullamento per il job di importazione: {}", jobId);
+        return importJobService.cancel(jobId)
+                .map(job -> ResponseEntity.accepted().body(job.toDTO()))
+                .orElse(ResponseEntity.notFound().build());
     }
 }
@@ -1,7 +1,10 @@
 package com.reindex.report.controller;
 
 import com.reindex.report.dto.FileReportDTO;
+import com.reindex.report.dto.FolderStatsDTO;
+import com.reindex.report.service.AlfrescoSourceRegistry;
 import com.reindex.report.service.FileReportService;
+import com.reindex.report.service.FolderStatsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -19,19 +22,37 @@ import java.util.List;
 public class FileReportController {
 
     private final FileReportService fileReportService;
+    private final FolderStatsService folderStatsService;
+    private final AlfrescoSourceRegistry sourceRegistry;
 
     /**
      * Endpoint che restituisce un report dettagliato dei file contenuti in una
      * cartella specifica.
      * Include calcoli sulla scadenza e sui giorni trascorsi.
+     * Senza 'sorgente' usa la prima sorgente configurata.
      */
     @GetMapping("/{nodeId}")
-    public ResponseEntity<List<FileReportDTO>> getFileReport(@PathVariable String nodeId) {
-        log.info("Richiesta generazione report per il nodo Alfresco: {}", nodeId);
+    public ResponseEntity<List<FileReportDTO>> getFileReport(@PathVariable String nodeId,
+            @RequestParam(required = false) String sorgente) {
+        sorgente = sourceRegistry.resolve(sorgente).getName();
+        log.info("Richiesta generazione report per il nodo Alfresco: {} ({})", nodeId, sorgente);
 
-        List<FileReportDTO> reports = fileReportService.getReports(nodeId);
+        List<FileReportDTO> reports = fileReportService.getReports(sorgente, nodeId);
         log.info("Report generato con successo: {} elementi trovati.", reports.size());
 
         return ResponseEntity.ok(reports);
     }
+
+    /**
+     * Endpoint che restituisce gli aggregati per cartella (numero documenti,
+     * dimensione totale, mimeType e documenti in scadenza).
+     * I valori sono quelli calcolati durante l'ultima sincronizzazione del nodo.
+     */
+    @GetMapping("/{nodeId}/folders")
+    public ResponseEntity<List<FolderStatsDTO>> getFolderStats(@PathVariable String nodeId,
+            @RequestParam(required = false) String sorgente) {
+        sorgente = sourceRegistry.resolve(sorgente).getName();
+        log.info("Richiesta aggregati per cartella del nodo Alfresco: {} ({})", nodeId, sorgente);
+        return ResponseEntity.ok(folderStatsService.getFolderStats(sorgente, nodeId));
+    }
 }
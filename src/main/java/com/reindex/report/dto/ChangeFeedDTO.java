@@ -0,0 +1,18 @@
+package com.reindex.report.dto;
+
+import com.reindex.report.entity.EventLog;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object per una pagina del change feed.
+ * Il cursore va ripassato alla richiesta successiva per ricevere solo gli
+ * eventi più recenti.
+ */
+@Value
+public class ChangeFeedDTO {
+    List<EventLog> eventi;
+    long cursor;
+    boolean altriDisponibili;
+}
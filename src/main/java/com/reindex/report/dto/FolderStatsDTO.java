@@ -0,0 +1,17 @@
+package com.reindex.report.dto;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Data Transfer Object con gli aggregati di una cartella.
+ */
+@Value
+public class FolderStatsDTO {
+    String struttura;
+    int numeroDocumenti;
+    long dimensioneTotale;
+    Map<String, Integer> mimeTypes;
+    int documentiInScadenza;
+}
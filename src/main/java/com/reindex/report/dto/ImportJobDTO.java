@@ -0,0 +1,24 @@
+package com.reindex.report.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object con lo stato di avanzamento di un job di importazione.
+ */
+@Value
+public class ImportJobDTO {
+    String jobId;
+    String sorgente;
+    String nodeId;
+    String stato;
+    String fase;
+    int pagineRecuperate;
+    int documentiRecuperati;
+    int eventiScritti;
+    Integer eventiTotali;
+    String errore;
+    LocalDateTime dataAvvio;
+    LocalDateTime dataFine;
+}
@@ -0,0 +1,66 @@
+package com.reindex.report.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Ultimo stato noto di un documento Alfresco all'interno di un nodo
+ * sincronizzato.
+ * Permette di calcolare gli aggregati per cartella come differenze tra una
+ * sincronizzazione e la successiva, senza rileggere lo storico degli eventi, ed
+ * è la base del passaggio di giorno ("Aggiornamento Statistiche").
+ */
+@Entity
+@Table(name = "document_state", uniqueConstraints = @UniqueConstraint(columnNames = { "sorgente", "node_id", "document_id" }))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Sorgente Alfresco di provenienza (le righe precedenti appartengono a "default")
+    @ColumnDefault("'default'")
+    @Column(nullable = false)
+    private String sorgente;
+
+    @Column(name = "node_id", nullable = false)
+    private String nodeId; // Nodo radice della sincronizzazione
+
+    @Column(name = "document_id", nullable = false)
+    private String documentId;
+
+    private String struttura; // Stesso formato di EventLog ("Folder_<parentId>")
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    private Long dimensione;
+
+    @Column(name = "data_scadenza")
+    private LocalDate dataScadenza;
+
+    private String utente; // Formato: "Nome Cognome (username)"
+
+    @Column(name = "nome_file")
+    private String nomeFile;
+
+    @Column(name = "data_creazione")
+    private LocalDateTime dataCreazione;
+
+    // Ultimo valore di giorniTrascorsi già registrato in event_log. Vuoto per i
+    // documenti nuovi, aggiornato solo dal passaggio di giorno, mai dalla
+    // sincronizzazione.
+    @Column(name = "giorni_tracciati", updatable = false)
+    private Integer giorniTracciati;
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -18,7 +19,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "event_log")
+@Table(name = "event_log", indexes = @Index(name = "idx_event_log_seq", columnList = "seq", unique = true))
 public class EventLog {
 
     @Id
@@ -36,6 +37,15 @@ public class EventLog {
 
     private String tipoAudit; // Categoria dell'audit (es. "DOCUMENTO")
 
+    // Sorgente Alfresco di provenienza (le righe precedenti appartengono a "default")
+    @ColumnDefault("'default'")
+    @Column(nullable = false)
+    private String sorgente;
+
+    // Sequenza di inserimento assegnata dal database, usata come cursore del change feed
+    @Column(name = "seq", columnDefinition = "bigserial", insertable = false, updatable = false)
+    private Long seq;
+
     /**
      * Costruttore di utilità senza ID.
      */
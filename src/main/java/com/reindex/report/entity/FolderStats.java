@@ -0,0 +1,59 @@
+package com.reindex.report.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Aggregati per cartella (struttura) mantenuti in modo incrementale ad ogni
+ * sincronizzazione.
+ * La lettura non dipende dal numero di documenti contenuti nelle cartelle.
+ */
+@Entity
+@Table(name = "folder_stats", uniqueConstraints = @UniqueConstraint(columnNames = { "sorgente", "node_id", "struttura" }))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Sorgente Alfresco di provenienza (le righe precedenti appartengono a "default")
+    @ColumnDefault("'default'")
+    @Column(nullable = false)
+    private String sorgente;
+
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private String struttura;
+
+    @Column(name = "numero_documenti")
+    private Integer numeroDocumenti;
+
+    @Column(name = "dimensione_totale")
+    private Long dimensioneTotale; // Byte
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "mime_types", columnDefinition = "jsonb")
+    private Map<String, Integer> mimeTypes; // mimeType -> numero documenti
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private Map<String, Integer> scadenze; // data di scadenza (ISO) -> numero documenti
+
+    @Column(name = "data_aggiornamento")
+    private LocalDateTime dataAggiornamento;
+}
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
@@ -33,4 +34,9 @@ public class SyncHistory {
 
     @Column(name = "nuovi_eventi")
     private Integer nuoviEventi;
+
+    // Sorgente Alfresco di provenienza (le righe precedenti appartengono a "default")
+    @ColumnDefault("'default'")
+    @Column(nullable = false)
+    private String sorgente;
 }
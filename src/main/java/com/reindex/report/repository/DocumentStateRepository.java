@@ -0,0 +1,125 @@
+package com.reindex.report.repository;
+
+import com.reindex.report.entity.DocumentState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository per l'ultimo stato noto dei documenti sincronizzati.
+ */
+@Repository
+public interface DocumentStateRepository extends JpaRepository<DocumentState, Long> {
+
+    List<DocumentState> findBySorgenteAndNodeId(String sorgente, String nodeId);
+
+    boolean existsBySorgente(String sorgente);
+
+    @Modifying
+    @Query("UPDATE DocumentState d SET d.sorgente = :nuova WHERE d.sorgente = :vecchia")
+    int reassignSource(@Param("vecchia") String vecchia, @Param("nuova") String nuova);
+
+    /**
+     * Vincolo di unicità creato prima del supporto a più repository.
+     */
+    interface LegacyConstraint {
+
+        String getTabella();
+
+        String getVincolo();
+    }
+
+    // Vincoli di unicità precedenti al supporto a più repository, riconosciuti
+    // dalle esatte colonne originali: (node_id, document_id) su document_state e
+    // (node_id, struttura) su folder_stats. ddl-auto=update aggiunge i nuovi
+    // vincoli comprensivi di sorgente ma non elimina i precedenti
+    @Query(value = """
+            SELECT CAST(rel.relname AS text) AS tabella, CAST(con.conname AS text) AS vincolo
+            FROM pg_constraint con
+            JOIN pg_class rel ON rel.oid = con.conrelid
+            JOIN pg_namespace ns ON ns.oid = rel.relnamespace
+            CROSS JOIN LATERAL (SELECT string_agg(CAST(a.attname AS text), ',' ORDER BY a.attname) AS colonne
+                                FROM pg_attribute a
+                                WHERE a.attrelid = con.conrelid
+                                  AND a.attnum = ANY (con.conkey)) c
+            WHERE con.contype = 'u'
+              AND ns.nspname = current_schema()
+              AND ((rel.relname = 'document_state' AND c.colonne = 'document_id,node_id')
+                OR (rel.relname = 'folder_stats' AND c.colonne = 'node_id,struttura'))
+            ORDER BY 1, 2
+            """, nativeQuery = true)
+    List<LegacyConstraint> findLegacyUniqueConstraints();
+
+    // Inserisce un evento "Aggiornamento Statistiche" per ogni giorno non ancora
+    // registrato di ogni documento attivo (recupera anche i giorni di fermo).
+    // Senza giorni_tracciati (documenti nuovi o righe precedenti al tracciamento)
+    // riparte dall'ultimo giorniTrascorsi presente in event_log, ricavato con
+    // un'unica aggregazione limitata a quei documenti; altrimenti dal solo giorno
+    // corrente. Limitato alle sorgenti indicate; :nodeId vuoto = tutti i nodi;
+    // con :soloNonTracciati solo i documenti senza giorni_tracciati.
+    @Modifying
+    @Query(value = """
+            WITH da_recuperare AS (
+                SELECT DISTINCT sorgente, document_id
+                FROM document_state
+                WHERE giorni_tracciati IS NULL AND data_creazione IS NOT NULL
+                  AND sorgente IN (:sorgenti)
+                  AND (:nodeId = '' OR node_id = :nodeId)),
+            registrati AS (
+                SELECT e.sorgente, e.dettagli ->> 'id' AS document_id,
+                       MAX(CAST(e.dettagli ->> 'giorniTrascorsi' AS integer)) AS giorni
+                FROM event_log e
+                JOIN da_recuperare r ON r.sorgente = e.sorgente AND r.document_id = e.dettagli ->> 'id'
+                WHERE e.dettagli ->> 'giorniTrascorsi' IS NOT NULL
+                GROUP BY e.sorgente, e.dettagli ->> 'id')
+            INSERT INTO event_log (id, sorgente, utente, struttura, data, evento, dettagli, tipo_audit)
+            SELECT CAST(gen_random_uuid() AS varchar), d.sorgente, d.utente, d.struttura,
+                   CAST(CAST(d.data_creazione AS date) + g.giorno AS timestamp),
+                   'Aggiornamento Statistiche',
+                   jsonb_strip_nulls(jsonb_build_object(
+                           'nomeFile', d.nome_file,
+                           'id', d.document_id,
+                           'stato', 'Attivo',
+                           'mimeType', d.mime_type,
+                           'dimensione', d.dimensione,
+                           'dataScadenza', to_char(d.data_scadenza + CAST(d.data_creazione AS time), 'YYYY-MM-DD"T"HH24:MI:SS'),
+                           'giorniTrascorsi', g.giorno)),
+                   'DOCUMENTO'
+            FROM (SELECT DISTINCT ON (ds.sorgente, ds.document_id) ds.*,
+                         COALESCE(ds.giorni_tracciati, r.giorni,
+                                  CAST(:oggi AS date) - CAST(ds.data_creazione AS date) - 1) AS ultimo_giorno
+                  FROM document_state ds
+                  LEFT JOIN registrati r ON r.sorgente = ds.sorgente AND r.document_id = ds.document_id
+                  WHERE ds.data_creazione IS NOT NULL
+                    AND ds.sorgente IN (:sorgenti)
+                    AND (:nodeId = '' OR ds.node_id = :nodeId)
+                    AND (:soloNonTracciati = false OR ds.giorni_tracciati IS NULL)
+                  ORDER BY ds.sorgente, ds.document_id, ds.giorni_tracciati DESC NULLS LAST) d
+            CROSS JOIN LATERAL generate_series(d.ultimo_giorno + 1,
+                    CAST(:oggi AS date) - CAST(d.data_creazione AS date)) AS g(giorno)
+            WHERE g.giorno > 0
+            ORDER BY 5, d.sorgente, d.document_id
+            """, nativeQuery = true)
+    int insertStatisticsEvents(@Param("oggi") LocalDate oggi, @Param("sorgenti") Collection<String> sorgenti,
+            @Param("nodeId") String nodeId, @Param("soloNonTracciati") boolean soloNonTracciati);
+
+    // Allinea giorni_tracciati dopo l'inserimento degli eventi di passaggio giorno
+    @Modifying
+    @Query(value = """
+            UPDATE document_state
+            SET giorni_tracciati = CAST(:oggi AS date) - CAST(data_creazione AS date)
+            WHERE data_creazione IS NOT NULL
+              AND (giorni_tracciati IS NULL OR giorni_tracciati < CAST(:oggi AS date) - CAST(data_creazione AS date))
+              AND sorgente IN (:sorgenti)
+              AND (:nodeId = '' OR node_id = :nodeId)
+              AND (:soloNonTracciati = false OR giorni_tracciati IS NULL)
+            """, nativeQuery = true)
+    int advanceTrackedDays(@Param("oggi") LocalDate oggi, @Param("sorgenti") Collection<String> sorgenti,
+            @Param("nodeId") String nodeId, @Param("soloNonTracciati") boolean soloNonTracciati);
+}
@@ -1,7 +1,9 @@
 package com.reindex.report.repository;
 
 import com.reindex.report.entity.EventLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,14 +18,22 @@ public interface EventLogRepository extends JpaRepository<EventLog, String> {
 
     Optional<EventLog> findByUtenteAndDataAndEvento(String utente, LocalDateTime data, String evento);
 
-    boolean existsByUtenteAndDataAndEvento(String utente, LocalDateTime data, String evento);
+    boolean existsBySorgenteAndUtenteAndDataAndEvento(String sorgente, String utente, LocalDateTime data,
+            String evento);
+
+    boolean existsBySorgente(String sorgente);
 
     // Query Nativa PostgreSQL per cercare dentro il JSONB 'dettagli'
-    @Query(value = "SELECT * FROM event_log WHERE dettagli ->> 'id' = :docId", nativeQuery = true)
-    List<EventLog> findByDocumentIdOrderByDataDesc(@Param("docId") String docId,
+    @Query(value = "SELECT * FROM event_log WHERE sorgente = :sorgente AND dettagli ->> 'id' = :docId", nativeQuery = true)
+    List<EventLog> findByDocumentIdOrderByDataDesc(@Param("sorgente") String sorgente, @Param("docId") String docId,
             org.springframework.data.domain.Sort sort);
 
-    // Query Nativa per trovare documenti con tracking (giorniTrascorsi presente)
-    @Query(value = "SELECT * FROM event_log WHERE dettagli ->> 'id' = :docId AND dettagli -> 'giorniTrascorsi' IS NOT NULL", nativeQuery = true)
-    List<EventLog> findLastWithTrackingData(@Param("docId") String docId, org.springframework.data.domain.Sort sort);
+    // Eventi inseriti dopo il cursore, in ordine di inserimento (change feed)
+    List<EventLog> findBySeqGreaterThanOrderBySeqAsc(Long seq, Pageable pageable);
+
+    // Riassegna gli eventi ad un'altra sorgente (la sequenza del change feed non
+    // cambia)
+    @Modifying
+    @Query("UPDATE EventLog e SET e.sorgente = :nuova WHERE e.sorgente = :vecchia")
+    int reassignSource(@Param("vecchia") String vecchia, @Param("nuova") String nuova);
 }
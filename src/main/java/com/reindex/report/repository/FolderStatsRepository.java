@@ -0,0 +1,25 @@
+package com.reindex.report.repository;
+
+import com.reindex.report.entity.FolderStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository per gli aggregati per cartella.
+ */
+@Repository
+public interface FolderStatsRepository extends JpaRepository<FolderStats, Long> {
+
+    List<FolderStats> findBySorgenteAndNodeId(String sorgente, String nodeId);
+
+    List<FolderStats> findBySorgenteAndNodeIdOrderByStrutturaAsc(String sorgente, String nodeId);
+
+    @Modifying
+    @Query("UPDATE FolderStats f SET f.sorgente = :nuova WHERE f.sorgente = :vecchia")
+    int reassignSource(@Param("vecchia") String vecchia, @Param("nuova") String nuova);
+}
@@ -2,6 +2,9 @@ package com.reindex.report.repository;
 
 import com.reindex.report.entity.SyncHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +12,8 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface SyncHistoryRepository extends JpaRepository<SyncHistory, Long> {
+
+    @Modifying
+    @Query("UPDATE SyncHistory s SET s.sorgente = :nuova WHERE s.sorgente = :vecchia")
+    int reassignSource(@Param("vecchia") String vecchia, @Param("nuova") String nuova);
 }
@@ -1,12 +1,21 @@
 package com.reindex.report.scheduler;
 
-import com.reindex.report.service.EventLogService;
+import com.reindex.report.service.AlfrescoSource;
+import com.reindex.report.service.AlfrescoSourceRegistry;
+import com.reindex.report.service.DayRolloverService;
+import com.reindex.report.service.ImportJob;
+import com.reindex.report.service.ImportJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Scheduler incaricato di eseguire la sincronizzazione periodica con Alfresco.
  * Logica delle metriche rimossa (ora gestita direttamente da Grafana su
@@ -17,33 +26,71 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class EventScheduler {
 
-    private final EventLogService eventLogService;
+    private final ImportJobService importJobService;
+    private final DayRolloverService dayRolloverService;
+    private final AlfrescoSourceRegistry sourceRegistry;
 
-    @Value("${scheduler.node-id}")
-    private String nodeId;
+    // Ultimo job avviato per ogni nodo, per non registrare più volte l'esito di un
+    // job ancora in corso
+    private final Map<String, String> lastJobIds = new ConcurrentHashMap<>();
 
     /**
-     * Esecuzione periodica ogni 10 secondi.
+     * Esecuzione periodica ogni 10 secondi per ogni nodo di ogni sorgente.
+     * Le importazioni partono sull'executor della rispettiva sorgente senza
+     * bloccare lo scheduler, così una sorgente lenta non ritarda le altre; passando
+     * dal servizio dei job, un nodo ancora in sincronizzazione non viene avviato
+     * una seconda volta.
      */
     @Scheduled(fixedRate = 10000)
     public void scheduledImportEvents() {
-        if (isNodeIdInvalid()) {
-            log.warn("Scheduler: 'scheduler.node-id' non configurato o non valido.");
-            return;
+        for (AlfrescoSource source : sourceRegistry.getSources()) {
+            if (source.getNodeIds().isEmpty()) {
+                log.warn("Scheduler: nessun nodo configurato per la sorgente '{}'.", source.getName());
+                continue;
+            }
+            source.getNodeIds().forEach(nodeId -> submitImport(source.getName(), nodeId));
         }
+    }
 
+    /**
+     * Passaggio di giorno a mezzanotte (ora locale).
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void scheduledDayRollover() {
         try {
-            int count = eventLogService.importEventsWithoutDuplicates(nodeId);
-            if (count > 0) {
-                log.info("Sincronizzazione automatica eseguita: trovati e processati {} nuovi eventi per il nodo {}.",
-                        count, nodeId);
-            }
+            dayRolloverService.rollover();
         } catch (Exception e) {
-            log.error("Errore durante l'esecuzione dello scheduler di importazione", e);
+            log.error("Errore durante il passaggio di giorno", e);
         }
     }
 
-    private boolean isNodeIdInvalid() {
-        return nodeId == null || nodeId.isEmpty() || "INSERISCI_QUI_IL_TUO_NODE_ID".equals(nodeId);
+    /**
+     * All'avvio recupera i passaggi di giorno persi durante il fermo
+     * dell'applicazione.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpDayRollover() {
+        scheduledDayRollover();
+    }
+
+    private void submitImport(String sorgente, String nodeId) {
+        try {
+            ImportJob job = importJobService.submit(sorgente, nodeId);
+            if (job.getId().equals(lastJobIds.put(sorgente + "/" + nodeId, job.getId()))) {
+                return;
+            }
+            job.getCompletion().whenComplete((count, error) -> {
+                if (error instanceof CancellationException) {
+                    log.warn("Sincronizzazione automatica annullata per il nodo {} ({}).", nodeId, sorgente);
+                } else if (error != null) {
+                    log.error("Errore durante la sincronizzazione automatica del nodo {} ({})", nodeId, sorgente, error);
+                } else if (count > 0) {
+                    log.info("Sincronizzazione automatica eseguita: trovati e processati {} nuovi eventi per il nodo {} ({}).",
+                            count, nodeId, sorgente);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Errore durante l'esecuzione dello scheduler di importazione", e);
+        }
     }
 }
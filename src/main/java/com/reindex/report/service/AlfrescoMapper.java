@@ -1,6 +1,7 @@
 package com.reindex.report.service;
 
 import com.reindex.report.dto.FileReportDTO;
+import com.reindex.report.entity.DocumentState;
 import com.reindex.report.entity.EventLog;
 import org.alfresco.search.model.ResultNode;
 import org.springframework.stereotype.Component;
@@ -29,17 +30,7 @@ public class AlfrescoMapper {
     public Map<String, Object> toMap(ResultNode entry) {
         Map<String, Object> data = new HashMap<>();
 
-        // Gestione utente: preferenza a modifiedByUser, fallback su createdByUser
-        String userId = "system";
-        String userName = "System";
-        if (entry.getModifiedByUser() != null) {
-            userId = entry.getModifiedByUser().getId();
-            userName = entry.getModifiedByUser().getDisplayName();
-        } else if (entry.getCreatedByUser() != null) {
-            userId = entry.getCreatedByUser().getId();
-            userName = entry.getCreatedByUser().getDisplayName();
-        }
-        data.put("utente", String.format("%s (%s)", userName, userId));
+        data.put("utente", extractUser(entry));
 
         // Struttura (Parent ID come identificativo cartella)
         data.put("struttura", entry.getParentId() != null ? "Folder_" + entry.getParentId() : "");
@@ -100,6 +91,50 @@ public class AlfrescoMapper {
                 ChronoUnit.DAYS.between(creationDate.toLocalDate(), LocalDateTime.now().toLocalDate()));
     }
 
+    /**
+     * Converte un nodo Alfresco nello stato persistito usato per gli aggregati
+     * per cartella.
+     */
+    public DocumentState toDocumentState(String sorgente, String nodeId, ResultNode entry) {
+        DocumentState state = new DocumentState();
+        state.setSorgente(sorgente);
+        state.setNodeId(nodeId);
+        state.setDocumentId(entry.getId());
+        state.setStruttura(entry.getParentId() != null ? "Folder_" + entry.getParentId() : "");
+        state.setUtente(extractUser(entry));
+        state.setNomeFile(entry.getName());
+
+        if (entry.getContent() != null) {
+            state.setMimeType(entry.getContent().getMimeType());
+            Number size = entry.getContent().getSizeInBytes();
+            state.setDimensione(size != null ? size.longValue() : null);
+        }
+
+        if (entry.getCreatedAt() != null) {
+            LocalDateTime creationDate = entry.getCreatedAt().toLocalDateTime();
+            state.setDataCreazione(creationDate);
+            state.setDataScadenza(creationDate.plusDays(EXPIRATION_DAYS).toLocalDate());
+        }
+
+        return state;
+    }
+
+    /**
+     * Gestione utente: preferenza a modifiedByUser, fallback su createdByUser.
+     */
+    private String extractUser(ResultNode entry) {
+        String userId = "system";
+        String userName = "System";
+        if (entry.getModifiedByUser() != null) {
+            userId = entry.getModifiedByUser().getId();
+            userName = entry.getModifiedByUser().getDisplayName();
+        } else if (entry.getCreatedByUser() != null) {
+            userId = entry.getCreatedByUser().getId();
+            userName = entry.getCreatedByUser().getDisplayName();
+        }
+        return String.format("%s (%s)", userName, userId);
+    }
+
     /**
      * Estrae i metadati comuni di un documento.
      */
@@ -2,34 +2,103 @@ package com.reindex.report.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.alfresco.search.handler.SearchApi;
+import org.alfresco.search.model.Pagination;
 import org.alfresco.search.model.RequestPagination;
 import org.alfresco.search.model.RequestQuery;
+import org.alfresco.search.model.RequestSortDefinition;
+import org.alfresco.search.model.RequestSortDefinitionInner;
 import org.alfresco.search.model.ResultSetPaging;
 import org.alfresco.search.model.ResultNode;
 import org.alfresco.search.model.SearchRequest;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Servizio dedicato alla comunicazione con le API di ricerca di Alfresco.
- * Centralizza la costruzione delle query e la gestione del paging.
+ * Centralizza la costruzione delle query e la gestione del paging; ogni
+ * chiamata usa il client e i limiti della sorgente indicata.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AlfrescoService {
 
-    private final SearchApi searchApi;
+    private static final String SEARCH_PATH = "/alfresco/api/-default-/public/search/versions/1/search";
+
+    // Dimensione della pagina richiesta ad Alfresco (standard per export/report)
+    private static final int PAGE_SIZE = 1000;
+
+    private final AlfrescoSourceRegistry sourceRegistry;
 
     /**
      * Esegue una ricerca di tutti i documenti contenuti ricorsivamente in un nodo.
      */
-    public List<ResultNode> searchDocuments(String nodeId) {
-        log.info("Avvio ricerca documenti in Alfresco per il nodo: {}", nodeId);
+    public List<ResultNode> searchDocuments(String sorgente, String nodeId) {
+        return searchDocuments(sorgente, nodeId, page -> {
+        });
+    }
+
+    /**
+     * Esegue una ricerca di tutti i documenti contenuti ricorsivamente in un nodo,
+     * notificando ogni pagina recuperata al consumer.
+     * Le pagine vengono richieste finché Alfresco segnala altri risultati, in
+     * ordine di creazione così che i documenti aggiunti nel frattempo finiscano in
+     * coda. Se una pagina non può essere recuperata, o l'elenco cambia durante la
+     * paginazione, viene sollevata un'eccezione: un elenco parziale verrebbe
+     * scambiato per l'eliminazione dei documenti mancanti.
+     */
+    public List<ResultNode> searchDocuments(String sorgente, String nodeId, Consumer<List<ResultNode>> pageConsumer) {
+        AlfrescoSource source = sourceRegistry.get(sorgente);
+        log.info("Avvio ricerca documenti in Alfresco ({}) per il nodo: {}", sorgente, nodeId);
+
+        List<ResultNode> results = new ArrayList<>();
+        Set<String> documentIds = new HashSet<>();
+        Long totalItems = null;
+        int skipCount = 0;
+        SearchPage page;
+        do {
+            try {
+                page = fetchPage(source, nodeId, skipCount);
+            } catch (Exception e) {
+                log.error("Errore durante la ricerca su Alfresco ({}) per il nodo {} dopo {} documenti: {}", sorgente,
+                        nodeId, results.size(), e.getMessage());
+                throw new IllegalStateException("Ricerca su Alfresco (" + sorgente + ") non riuscita per il nodo "
+                        + nodeId + ": " + e.getMessage(), e);
+            }
+
+            if (totalItems == null) {
+                totalItems = page.totalItems();
+            } else if (!Objects.equals(totalItems, page.totalItems())) {
+                throw new IllegalStateException("Elenco dei documenti del nodo " + nodeId + " (" + sorgente
+                        + ") modificato durante la paginazione: " + totalItems + " -> " + page.totalItems());
+            }
+            if (page.hasMoreItems() && page.nodes().isEmpty()) {
+                throw new IllegalStateException("Pagina vuota da Alfresco (" + sorgente + ") per il nodo " + nodeId
+                        + " con altri risultati segnalati dopo " + skipCount + " documenti");
+            }
+            skipCount += page.nodes().size();
 
+            // Con criteri di ordinamento a pari merito un documento può ripresentarsi
+            List<ResultNode> newNodes = page.nodes().stream()
+                    .filter(node -> documentIds.add(node.getId()))
+                    .collect(Collectors.toList());
+            results.addAll(newNodes);
+            pageConsumer.accept(newNodes);
+        } while (page.hasMoreItems());
+
+        log.info("Ricerca completata: trovati {} documenti per il nodo {} ({})", results.size(), nodeId, sorgente);
+        return results;
+    }
+
+    private SearchPage fetchPage(AlfrescoSource source, String nodeId, int skipCount) {
         RequestQuery requestQuery = new RequestQuery();
         String parentReference = "workspace://SpacesStore/" + nodeId;
         // Cerchiamo tutti i contenuti (cm:content) che hanno come antenato il nodo
@@ -38,23 +107,40 @@ public class AlfrescoService {
 
         SearchRequest searchRequest = new SearchRequest();
         searchRequest.setQuery(requestQuery);
-        // Impostiamo un limite alto per il recupero dei documenti (standard per
-        // export/report)
-        searchRequest.setPaging(new RequestPagination().maxItems(1000).skipCount(0));
+        searchRequest.setPaging(new RequestPagination().maxItems(PAGE_SIZE).skipCount(skipCount));
+        // Ordinamento stabile tra una pagina e l'altra
+        searchRequest.setSort(sortByCreation());
 
-        try {
-            ResultSetPaging response = searchApi.search(searchRequest).getBody();
-            List<ResultNode> results = new ArrayList<>();
+        ResultSetPaging response = source.call(client -> client.post()
+                .uri(SEARCH_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(searchRequest)
+                .retrieve()
+                .body(ResultSetPaging.class));
+        List<ResultNode> nodes = new ArrayList<>();
 
-            if (response != null && response.getList() != null) {
-                response.getList().getEntries().forEach(item -> results.add(item.getEntry()));
-            }
-
-            log.info("Ricerca completata: trovati {} documenti per il nodo {}", results.size(), nodeId);
-            return results;
-        } catch (Exception e) {
-            log.error("Errore durante la ricerca su Alfresco per il nodo {}: {}", nodeId, e.getMessage());
-            return new ArrayList<>();
+        if (response == null || response.getList() == null) {
+            return new SearchPage(nodes, false, null);
+        }
+        if (response.getList().getEntries() != null) {
+            response.getList().getEntries().forEach(item -> nodes.add(item.getEntry()));
         }
+        Pagination pagination = response.getList().getPagination();
+        if (pagination == null) {
+            return new SearchPage(nodes, false, null);
+        }
+        return new SearchPage(nodes, Boolean.TRUE.equals(pagination.getHasMoreItems()), pagination.getTotalItems());
+    }
+
+    private static RequestSortDefinition sortByCreation() {
+        RequestSortDefinition sort = new RequestSortDefinition();
+        sort.add(new RequestSortDefinitionInner()
+                .type(RequestSortDefinitionInner.TypeEnum.FIELD)
+                .field("cm:created")
+                .ascending(true));
+        return sort;
+    }
+
+    private record SearchPage(List<ResultNode> nodes, boolean hasMoreItems, Long totalItems) {
     }
 }
@@ -0,0 +1,96 @@
+package com.reindex.report.service;
+
+import lombok.Getter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Repository Alfresco configurato, con risorse dedicate: client HTTP (e relativo
+ * pool di connessioni), limite di richieste contemporanee, limite di frequenza
+ * ed executor per le importazioni.
+ * Un repository lento satura solo le proprie risorse senza bloccare le altre
+ * sorgenti.
+ */
+@Getter
+public class AlfrescoSource {
+
+    private final String name;
+    private final List<String> nodeIds;
+    private final RestClient restClient;
+    private final ThreadPoolTaskExecutor importExecutor;
+    private final Duration readTimeout;
+    private final Semaphore permits;
+    private final RateLimiter rateLimiter;
+
+    public AlfrescoSource(String name, List<String> nodeIds, RestClient restClient,
+            ThreadPoolTaskExecutor importExecutor, Duration readTimeout, int maxConcurrentRequests,
+            double rateLimit) {
+        this.name = name;
+        this.nodeIds = List.copyOf(nodeIds);
+        this.restClient = restClient;
+        this.importExecutor = importExecutor;
+        this.readTimeout = readTimeout;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.rateLimiter = new RateLimiter(rateLimit);
+    }
+
+    /**
+     * Esegue una chiamata verso il repository rispettando il limite di
+     * concorrenza e di frequenza della sorgente.
+     */
+    public <T> T call(Function<RestClient, T> request) {
+        try {
+            if (!permits.tryAcquire(readTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Sorgente " + name + ": superato il limite di richieste contemporanee");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrotto in attesa della sorgente " + name, e);
+        }
+
+        try {
+            rateLimiter.acquire();
+            return request.apply(restClient);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrotto in attesa della sorgente " + name, e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Limite di frequenza: distribuisce le richieste ad intervalli regolari.
+     */
+    private static final class RateLimiter {
+
+        private final long intervalNanos;
+        private long nextSlot = System.nanoTime();
+
+        private RateLimiter(double requestsPerSecond) {
+            this.intervalNanos = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+        }
+
+        private void acquire() throws InterruptedException {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long slot = Math.max(now, nextSlot);
+                nextSlot = slot + intervalNanos;
+                wait = slot - now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.reindex.report.service;
+
+import com.reindex.report.config.AlfrescoSourcesProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro delle sorgenti Alfresco configurate.
+ * Dipende dalla pipeline di scrittura così che, in chiusura, le importazioni
+ * in corso terminino prima che la coda degli eventi venga svuotata.
+ */
+@Slf4j
+@Component
+@DependsOn("eventWritePipeline")
+public class AlfrescoSourceRegistry {
+
+    private static final String NODE_ID_PLACEHOLDER = "INSERISCI_QUI_IL_TUO_NODE_ID";
+
+    private final Map<String, AlfrescoSource> sources = new LinkedHashMap<>();
+
+    public AlfrescoSourceRegistry(AlfrescoSourcesProperties properties,
+            RestClient.Builder restClientBuilder,
+            @Value("${content.service.url:}") String defaultUrl,
+            @Value("${content.service.security.basicAuth.username:}") String defaultUsername,
+            @Value("${content.service.security.basicAuth.password:}") String defaultPassword,
+            @Value("${scheduler.node-id:}") String defaultNodeId) {
+        Map<String, AlfrescoSourcesProperties.Source> configured = properties.getSources();
+
+        if (configured.isEmpty()) {
+            // Compatibilità con la configurazione a repository singolo
+            AlfrescoSourcesProperties.Source source = new AlfrescoSourcesProperties.Source();
+            source.setUrl(defaultUrl);
+            source.setUsername(defaultUsername);
+            source.setPassword(defaultPassword);
+            if (defaultNodeId != null && !defaultNodeId.isEmpty() && !NODE_ID_PLACEHOLDER.equals(defaultNodeId)) {
+                source.setNodeIds(List.of(defaultNodeId));
+            }
+            configured = Map.of(AlfrescoSourcesProperties.DEFAULT_SOURCE, source);
+        }
+
+        configured.forEach((name, config) -> {
+            sources.put(name, createSource(name, config, restClientBuilder));
+            log.info("Sorgente Alfresco '{}' configurata: {} ({} nodi sincronizzati)", name, config.getUrl(),
+                    config.getNodeIds().size());
+        });
+    }
+
+    /**
+     * Restituisce la sorgente con il nome indicato.
+     */
+    public AlfrescoSource get(String name) {
+        AlfrescoSource source = sources.get(name);
+        if (source == null) {
+            throw new UnknownSourceException(name);
+        }
+        return source;
+    }
+
+    /**
+     * Come {@link #get(String)}, ma senza nome restituisce la prima sorgente
+     * configurata (l'unica, nella configurazione a repository singolo).
+     */
+    public AlfrescoSource resolve(String name) {
+        if (name == null || name.isBlank()) {
+            return sources.values().iterator().next();
+        }
+        return get(name);
+    }
+
+    public Collection<AlfrescoSource> getSources() {
+        return sources.values();
+    }
+
+    public List<String> getSourceNames() {
+        return List.copyOf(sources.keySet());
+    }
+
+    /**
+     * Attende la fine delle importazioni in corso su tutte le sorgenti.
+     */
+    @PreDestroy
+    public void shutdown() {
+        sources.values().forEach(source -> source.getImportExecutor().shutdown());
+    }
+
+    private AlfrescoSource createSource(String name, AlfrescoSourcesProperties.Source config,
+            RestClient.Builder restClientBuilder) {
+        // Client HTTP dedicato: ogni sorgente ha il proprio pool di connessioni
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(config.getConnectTimeout())
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(config.getReadTimeout());
+
+        RestClient restClient = restClientBuilder.clone()
+                .baseUrl(config.getUrl())
+                .requestFactory(requestFactory)
+                .defaultHeaders(headers -> headers.setBasicAuth(config.getUsername(), config.getPassword()))
+                .build();
+
+        ThreadPoolTaskExecutor importExecutor = new ThreadPoolTaskExecutor();
+        importExecutor.setCorePoolSize(config.getImportPoolSize());
+        importExecutor.setMaxPoolSize(config.getImportPoolSize());
+        importExecutor.setQueueCapacity(config.getImportQueueCapacity());
+        importExecutor.setThreadNamePrefix("import-" + name + "-");
+        importExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        importExecutor.setAwaitTerminationSeconds(30);
+        importExecutor.initialize();
+
+        return new AlfrescoSource(name, config.getNodeIds(), restClient, importExecutor, config.getReadTimeout(),
+                config.getMaxConcurrentRequests(), config.getRateLimit());
+    }
+}
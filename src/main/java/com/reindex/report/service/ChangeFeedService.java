@@ -0,0 +1,121 @@
+package com.reindex.report.service;
+
+import com.reindex.report.dto.ChangeFeedDTO;
+import com.reindex.report.entity.EventLog;
+import com.reindex.report.repository.EventLogRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Servizio per il change feed di event_log basato sulla sequenza di
+ * inserimento.
+ * Se non ci sono eventi successivi al cursore la richiesta resta in attesa
+ * (long-polling) finché la pipeline di scrittura non salva nuovi eventi o non
+ * scade il timeout.
+ * Il cursore è affidabile perché event_log viene scritta da un solo thread
+ * alla volta: la sequenza cresce nello stesso ordine dei commit.
+ */
+@Slf4j
+@Service
+public class ChangeFeedService {
+
+    private final EventLogRepository eventLogRepository;
+    private final int maxBatchSize;
+    private final long maxWaitMs;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(r -> new Thread(r, "change-feed"));
+
+    public ChangeFeedService(EventLogRepository eventLogRepository,
+            @Value("${report.changes.max-batch-size:500}") int maxBatchSize,
+            @Value("${report.changes.max-wait-ms:60000}") long maxWaitMs) {
+        this.eventLogRepository = eventLogRepository;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /**
+     * Restituisce gli eventi inseriti dopo il cursore, attendendo fino a waitMs
+     * se non ce ne sono.
+     */
+    public DeferredResult<ChangeFeedDTO> poll(long cursor, int limit, long waitMs) {
+        int batchSize = Math.max(1, Math.min(limit, maxBatchSize));
+        long timeout = Math.min(waitMs, maxWaitMs);
+
+        if (timeout <= 0) {
+            DeferredResult<ChangeFeedDTO> result = new DeferredResult<>();
+            result.setResult(fetch(cursor, batchSize));
+            return result;
+        }
+
+        DeferredResult<ChangeFeedDTO> result = new DeferredResult<>(timeout,
+                () -> new ChangeFeedDTO(List.of(), cursor, false));
+        Waiter waiter = new Waiter(cursor, batchSize, result);
+
+        // Registriamo l'attesa prima della lettura per non perdere notifiche
+        // arrivate nel frattempo
+        waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+        tryComplete(waiter);
+        return result;
+    }
+
+    /**
+     * Risveglia le richieste in attesa dopo ogni scrittura. Le notifiche
+     * ravvicinate vengono unite in un unico controllo, eseguito fuori dal thread
+     * di scrittura.
+     */
+    @EventListener
+    public void onEventsPersisted(EventsPersistedEvent event) {
+        if (waiters.isEmpty() || !wakeUpScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        notifier.execute(() -> {
+            wakeUpScheduled.set(false);
+            waiters.forEach(this::tryComplete);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        notifier.shutdownNow();
+    }
+
+    private void tryComplete(Waiter waiter) {
+        if (waiter.result().isSetOrExpired()) {
+            return;
+        }
+        try {
+            ChangeFeedDTO page = fetch(waiter.cursor(), waiter.batchSize());
+            if (!page.getEventi().isEmpty()) {
+                waiter.result().setResult(page);
+            }
+        } catch (Exception e) {
+            log.error("Errore durante la lettura del change feed dal cursore {}", waiter.cursor(), e);
+            waiter.result().setErrorResult(e);
+        }
+    }
+
+    private ChangeFeedDTO fetch(long cursor, int batchSize) {
+        List<EventLog> events = eventLogRepository.findBySeqGreaterThanOrderBySeqAsc(cursor,
+                PageRequest.of(0, batchSize));
+        long nextCursor = events.isEmpty() ? cursor : events.get(events.size() - 1).getSeq();
+        return new ChangeFeedDTO(events, nextCursor, events.size() == batchSize);
+    }
+
+    private record Waiter(long cursor, int batchSize, DeferredResult<ChangeFeedDTO> result) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.reindex.report.service;
+
+import com.reindex.report.repository.DocumentStateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Servizio per il passaggio di giorno.
+ * 'giorniTrascorsi' cambia solo a mezzanotte: gli eventi "Aggiornamento
+ * Statistiche" di tutti i documenti attivi vengono generati una volta al giorno
+ * con un'unica INSERT ... SELECT sullo stato persistito (document_state),
+ * senza interrogare Alfresco. Sono coinvolte solo le sorgenti configurate.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DayRolloverService {
+
+    private final DocumentStateRepository documentStateRepository;
+    private final EventWritePipeline eventWritePipeline;
+    private final AlfrescoSourceRegistry sourceRegistry;
+
+    // Filtro vuoto: tutti i nodi
+    private static final String ALL_NODES = "";
+
+    /**
+     * Registra i giorni trascorsi fino ad oggi, recuperando quelli mancanti.
+     * Può essere rieseguito: i giorni già registrati non vengono duplicati.
+     */
+    public int rollover() {
+        LocalDate today = LocalDate.now();
+        int inserted = track(today, sourceRegistry.getSourceNames(), ALL_NODES, false);
+
+        if (inserted > 0) {
+            log.info("Passaggio di giorno al {}: inseriti {} eventi di aggiornamento statistiche.", today, inserted);
+        }
+        return inserted;
+    }
+
+    /**
+     * Allinea ad oggi i documenti del nodo non ancora tracciati (appena
+     * sincronizzati), ricavando da event_log i giorni già registrati: i giorni
+     * mancanti vengono recuperati e i documenti senza tracciamento (es. visti la
+     * prima volta come "Modificato Documento") ricevono l'evento del giorno.
+     * I documenti già tracciati restano al passaggio di giorno pianificato.
+     */
+    public int trackNewDocuments(String sorgente, String nodeId) {
+        int inserted = track(LocalDate.now(), List.of(sorgente), nodeId, true);
+
+        if (inserted > 0) {
+            log.info("Tracciamento nuovi documenti del nodo {} ({}): inseriti {} eventi di aggiornamento statistiche.",
+                    nodeId, sorgente, inserted);
+        }
+        return inserted;
+    }
+
+    private int track(LocalDate today, List<String> sorgenti, String nodeId, boolean untrackedOnly) {
+        return eventWritePipeline.writeExclusive(status -> {
+            int events = documentStateRepository.insertStatisticsEvents(today, sorgenti, nodeId, untrackedOnly);
+            documentStateRepository.advanceTrackedDays(today, sorgenti, nodeId, untrackedOnly);
+            return events;
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.reindex.report.service;
 
+import com.reindex.report.entity.DocumentState;
 import com.reindex.report.entity.EventLog;
 import com.reindex.report.repository.EventLogRepository;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,8 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -27,82 +30,102 @@ public class EventLogService {
     private final EventLogRepository eventLogRepository;
     private final AlfrescoMapper alfrescoMapper;
     private final com.reindex.report.repository.SyncHistoryRepository syncHistoryRepository;
+    private final FolderStatsService folderStatsService;
+    private final EventWritePipeline eventWritePipeline;
+    private final DayRolloverService dayRolloverService;
 
     /**
      * Recupera i documenti da Alfresco e li restituisce come mappa di eventi
-     * grezzi.
+     * grezzi. Se Alfresco non risponde restituisce una lista vuota.
      */
-    public List<Map<String, Object>> getEventsFromAlfresco(String nodeId) {
-        log.info("Recupero eventi aggiornati da Alfresco per il nodo: {}", nodeId);
+    public List<Map<String, Object>> getEventsFromAlfresco(String sorgente, String nodeId) {
+        log.info("Recupero eventi aggiornati da Alfresco ({}) per il nodo: {}", sorgente, nodeId);
 
-        return alfrescoService.searchDocuments(nodeId).stream()
-                .map(alfrescoMapper::toMap)
-                .collect(Collectors.toList());
+        try {
+            return alfrescoService.searchDocuments(sorgente, nodeId).stream()
+                    .map(alfrescoMapper::toMap)
+                    .collect(Collectors.toList());
+        } catch (IllegalStateException e) {
+            log.warn("Eventi Alfresco non disponibili per il nodo {} ({}): {}", nodeId, sorgente, e.getMessage());
+            return new ArrayList<>();
+        }
     }
 
     /**
      * Esegue l'importazione degli eventi evitando duplicati e gestendo le
-     * eliminazioni e i cambi giorno.
+     * eliminazioni. Il passaggio di giorno è gestito da DayRolloverService.
      */
-    public int importEventsWithoutDuplicates(String nodeId) {
-        log.info("Inizio processo di sincronizzazione eventi per il nodo: {}", nodeId);
-
-        List<ResultNode> alfrescoNodes = alfrescoService.searchDocuments(nodeId);
-        List<String> currentDocumentIds = alfrescoNodes.stream()
-                .map(ResultNode::getId)
-                .collect(Collectors.toList());
-
-        List<String> savedDocumentIds = getSavedDocumentIds();
-
-        // 1. Gestione dei documenti eliminati
-        List<String> deletedDocumentIds = savedDocumentIds.stream()
-                .filter(id -> !currentDocumentIds.contains(id))
-                .collect(Collectors.toList());
-
-        int deletionEvents = createDeletionEvents(deletedDocumentIds);
+    public int importEventsWithoutDuplicates(String sorgente, String nodeId) {
+        return importEventsWithoutDuplicates(sorgente, nodeId, ImportProgressListener.NONE);
+    }
 
-        // 2. Processamento documenti attivi (nuovi o modificati)
-        if (alfrescoNodes.isEmpty()) {
-            return deletionEvents;
+    /**
+     * Come {@link #importEventsWithoutDuplicates(String, String)}, riportando
+     * l'avanzamento al listener. Tra una fase e l'altra verifica se è stato
+     * richiesto l'annullamento.
+     */
+    public int importEventsWithoutDuplicates(String sorgente, String nodeId, ImportProgressListener progress) {
+        log.info("Inizio processo di sincronizzazione eventi per il nodo: {} ({})", nodeId, sorgente);
+
+        // Scritture accodate il cui avanzamento non è ancora stato notificato
+        Deque<CompletableFuture<Integer>> pendingWrites = new ArrayDeque<>();
+        AtomicInteger newEventsCount = new AtomicInteger();
+        AtomicInteger writtenCount = new AtomicInteger();
+
+        // 1. Processamento documenti attivi (nuovi o modificati) pagina per pagina:
+        // la scrittura di una pagina procede mentre viene recuperata la successiva
+        progress.onPhase("RICERCA_DOCUMENTI");
+        List<ResultNode> alfrescoNodes = alfrescoService.searchDocuments(sorgente, nodeId, page -> {
+            progress.onPageFetched(page.size());
+            progress.checkCancelled();
+            List<EventLog> newEvents = filterNewEvents(sorgente, page);
+            newEventsCount.addAndGet(newEvents.size());
+            pendingWrites.add(eventWritePipeline.submit(newEvents));
+            writtenCount.addAndGet(reportCompletedWrites(pendingWrites, progress));
+        });
+
+        // Gli eventi delle pagine vengono salvati prima di aggiornare lo stato dei
+        // documenti, così document_state non anticipa mai event_log (su cui si
+        // basano il passaggio di giorno e gli eventi di eliminazione)
+        int totalNewEvents = writtenCount.get() + awaitWrites(pendingWrites, progress);
+
+        // Aggiornamento incrementale dello stato dei documenti e degli aggregati per
+        // cartella: restituisce i documenti non più presenti nel nodo
+        progress.checkCancelled();
+        progress.onPhase("AGGREGATI_CARTELLE");
+        List<DocumentState> removedDocuments = new ArrayList<>();
+        try {
+            FolderStatsService.SyncResult sync = folderStatsService.applySync(sorgente, nodeId, alfrescoNodes);
+            removedDocuments = sync.removedDocuments();
+            // Solo i documenti appena aggiunti vanno tracciati: gli altri restano al
+            // passaggio di giorno pianificato
+            if (sync.addedDocuments() > 0) {
+                totalNewEvents += dayRolloverService.trackNewDocuments(sorgente, nodeId);
+            }
+        } catch (Exception e) {
+            log.error("Errore durante l'aggiornamento dello stato dei documenti del nodo {}", nodeId, e);
         }
 
-        List<EventLog> eventsToSave = alfrescoNodes.stream()
-                .map(alfrescoMapper::toEntity)
-                .peek(event -> {
-                    // Puliamo i campi di tracking SOLO per le modifiche, NON per i nuovi documenti
-                    if ("Modificato Documento".equals(event.getEvento())) {
-                        event.getDettagli().remove("dataScadenza");
-                        event.getDettagli().remove("giorniTrascorsi");
-                    }
-                    // "Aggiunto Documento" mantiene sempre giorniTrascorsi per il tracking
-                    // temporale
-                })
-                .collect(Collectors.toList());
-
-        // Filtriamo solo gli eventi che non abbiamo ancora nel database
-        List<EventLog> newEvents = eventsToSave.stream()
-                .filter(event -> !eventLogRepository.existsByUtenteAndDataAndEvento(
-                        event.getUtente(), event.getData(), event.getEvento()))
-                .collect(Collectors.toList());
-
-        int savedCount = 0;
-        if (!newEvents.isEmpty()) {
-            eventLogRepository.saveAll(newEvents);
-            savedCount = newEvents.size();
-            log.info("Sincronizzazione completata: salvati {} nuovi eventi da Alfresco", savedCount);
+        // 2. Gestione dei documenti eliminati (non annullabile: lo stato rimosso e gli
+        // eventi di eliminazione vengono salvati insieme)
+        progress.onPhase("ELIMINAZIONI");
+        totalNewEvents += report(writeRemovals(sorgente, nodeId, removedDocuments), progress);
+        if (newEventsCount.get() > 0) {
+            log.info("Sincronizzazione completata: salvati {} nuovi eventi da Alfresco", newEventsCount.get());
         }
 
-        // 3. Controllo passaggio dei giorni (eventi sintetici)
-        int dayChangeEvents = checkForDayChanges(alfrescoNodes);
-
-        int totalNewEvents = savedCount + deletionEvents + dayChangeEvents;
+        if (alfrescoNodes.isEmpty()) {
+            return totalNewEvents;
+        }
 
-        // 4. Salvataggio storico sincronizzazione per metriche
+        // 3. Salvataggio storico sincronizzazione per metriche
+        progress.onPhase("STORICO");
         try {
             com.reindex.report.entity.SyncHistory history = com.reindex.report.entity.SyncHistory.builder()
                     .dataEsecuzione(LocalDateTime.now())
                     .documentiAttivi(alfrescoNodes.size())
                     .nuoviEventi(totalNewEvents)
+                    .sorgente(sorgente)
                     .build();
             syncHistoryRepository.save(history);
         } catch (Exception e) {
@@ -113,97 +136,90 @@ public class EventLogService {
     }
 
     /**
-     * Verifica se il contatore 'giorniTrascorsi' è aumentato per i documenti
-     * attivi.
-     * Gestisce sia documenti con storico che documenti nuovi senza eventi
-     * precedenti.
+     * Converte una pagina di documenti in eventi, scartando quelli già presenti
+     * nel database.
      */
-    private int checkForDayChanges(List<ResultNode> alfrescoNodes) {
-        List<EventLog> updatesToSave = new ArrayList<>();
-        LocalDateTime now = LocalDateTime.now();
-
-        for (ResultNode node : alfrescoNodes) {
-            String docId = node.getId();
-
-            // Recuperiamo l'ultimo evento che conteneva i dati di tracking
-            List<EventLog> savedEvents = eventLogRepository.findLastWithTrackingData(docId,
-                    Sort.by(Sort.Direction.DESC, "data"));
-
-            EventLog currentData = alfrescoMapper.toEntity(node);
-            long currentDays = ((Number) currentData.getDettagli().get("giorniTrascorsi")).longValue();
-
-            if (!savedEvents.isEmpty()) {
-                // CASO 1: Documento con storico - aggiorna solo se i giorni sono aumentati
-                EventLog lastSaved = savedEvents.get(0);
-
-                if (lastSaved.getDettagli() != null && lastSaved.getDettagli().containsKey("giorniTrascorsi")) {
-                    long savedDays = ((Number) lastSaved.getDettagli().get("giorniTrascorsi")).longValue();
-
-                    if (currentDays > savedDays) {
-                        log.info("Cambio giorno rilevato per {}: recupero {} giorni mancanti.", node.getName(),
-                                (currentDays - savedDays));
-
-                        for (long d = savedDays + 1; d <= currentDays; d++) {
-                            long diff = currentDays - d;
-                            LocalDateTime midnight = now.toLocalDate().minusDays(diff).atStartOfDay();
-
-                            EventLog historicalEvent = alfrescoMapper.toEntity(node);
-                            historicalEvent.setData(midnight);
-                            historicalEvent.setEvento("Aggiornamento Statistiche");
-                            historicalEvent.getDettagli().put("giorniTrascorsi", d);
-
-                            updatesToSave.add(historicalEvent);
-                        }
-                    }
-                }
-            } else {
-                // CASO 2: Documento senza storico di tracking - crea evento iniziale se
-                // necessario
-                // Questo gestisce documenti nuovi o documenti i cui ultimi eventi erano
-                // "Modificato Documento"
-                if (currentDays > 0) {
-                    // Verifica se esiste già un evento "Aggiornamento Statistiche" per oggi
-                    LocalDateTime todayMidnight = now.toLocalDate().atStartOfDay();
-                    boolean alreadyHasTodayUpdate = eventLogRepository.existsByUtenteAndDataAndEvento(
-                            currentData.getUtente(), todayMidnight, "Aggiornamento Statistiche");
-
-                    if (!alreadyHasTodayUpdate) {
-                        log.info(
-                                "Documento senza storico tracking rilevato: {}, creazione evento iniziale con {} giorni.",
-                                node.getName(), currentDays);
-
-                        EventLog historicalEvent = alfrescoMapper.toEntity(node);
-                        historicalEvent.setData(todayMidnight);
-                        historicalEvent.setEvento("Aggiornamento Statistiche");
-                        historicalEvent.getDettagli().put("giorniTrascorsi", currentDays);
-
-                        updatesToSave.add(historicalEvent);
+    private List<EventLog> filterNewEvents(String sorgente, List<ResultNode> page) {
+        return page.stream()
+                .map(alfrescoMapper::toEntity)
+                .peek(event -> {
+                    event.setSorgente(sorgente);
+                    // Puliamo i campi di tracking SOLO per le modifiche, NON per i nuovi documenti
+                    if ("Modificato Documento".equals(event.getEvento())) {
+                        event.getDettagli().remove("dataScadenza");
+                        event.getDettagli().remove("giorniTrascorsi");
                     }
-                }
-            }
+                    // "Aggiunto Documento" mantiene sempre giorniTrascorsi per il tracking
+                    // temporale
+                })
+                // Filtriamo solo gli eventi che non abbiamo ancora nel database
+                .filter(event -> !eventLogRepository.existsBySorgenteAndUtenteAndDataAndEvento(
+                        sorgente, event.getUtente(), event.getData(), event.getEvento()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Notifica al listener le scritture già concluse, in ordine di invio.
+     * L'avanzamento viene sempre pubblicato dal thread dell'importazione, mai da
+     * quello della pipeline di scrittura; le scritture fallite restano in coda e
+     * vengono segnalate da {@link #awaitWrites}.
+     */
+    private int reportCompletedWrites(Deque<CompletableFuture<Integer>> pendingWrites,
+            ImportProgressListener progress) {
+        int written = 0;
+        while (!pendingWrites.isEmpty() && pendingWrites.peek().isDone()
+                && !pendingWrites.peek().isCompletedExceptionally()) {
+            written += report(pendingWrites.poll().join(), progress);
         }
+        return written;
+    }
 
-        if (!updatesToSave.isEmpty()) {
-            eventLogRepository.saveAll(updatesToSave);
-            log.info("Completato aggiornamento statistico: inseriti {} eventi di cambio giorno.", updatesToSave.size());
+    /**
+     * Attende che tutti gli eventi accodati siano stati salvati e ne restituisce
+     * il numero.
+     */
+    private int awaitWrites(Deque<CompletableFuture<Integer>> pendingWrites, ImportProgressListener progress) {
+        progress.onPhase("SCRITTURA");
+        int written = 0;
+        while (!pendingWrites.isEmpty()) {
+            written += report(pendingWrites.poll().join(), progress);
         }
+        return written;
+    }
 
-        return updatesToSave.size();
+    private int report(int written, ImportProgressListener progress) {
+        if (written > 0) {
+            progress.onEventsWritten(written);
+        }
+        return written;
     }
 
-    private List<String> getSavedDocumentIds() {
-        return eventLogRepository.findAll().stream()
-                .filter(e -> e.getDettagli() != null && e.getDettagli().containsKey("id"))
-                .map(e -> (String) e.getDettagli().get("id"))
-                .distinct()
-                .collect(Collectors.toList());
+    /**
+     * Salva gli eventi di eliminazione nella stessa transazione che rimuove lo
+     * stato dei documenti: se la scrittura fallisce i documenti restano in
+     * document_state e vengono rilevati di nuovo alla sincronizzazione
+     * successiva.
+     */
+    private int writeRemovals(String sorgente, String nodeId, List<DocumentState> removedDocuments) {
+        if (removedDocuments.isEmpty()) {
+            return 0;
+        }
+        List<EventLog> deletionEvents = createDeletionEvents(sorgente, removedDocuments.stream()
+                .map(DocumentState::getDocumentId)
+                .collect(Collectors.toList()));
+
+        return eventWritePipeline.writeExclusive(status -> {
+            folderStatsService.applyRemovals(sorgente, nodeId, removedDocuments);
+            eventLogRepository.saveAll(deletionEvents);
+            return deletionEvents.size();
+        });
     }
 
-    private int createDeletionEvents(List<String> deletedDocumentIds) {
-        int createdEvents = 0;
+    private List<EventLog> createDeletionEvents(String sorgente, List<String> deletedDocumentIds) {
+        List<EventLog> deletionEvents = new ArrayList<>();
 
         for (String docId : deletedDocumentIds) {
-            List<EventLog> docEvents = eventLogRepository.findByDocumentIdOrderByDataDesc(docId,
+            List<EventLog> docEvents = eventLogRepository.findByDocumentIdOrderByDataDesc(sorgente, docId,
                     Sort.by(Sort.Direction.DESC, "data"));
 
             if (!docEvents.isEmpty()) {
@@ -227,13 +243,13 @@ public class EventLogService {
                             "Eliminato Documento",
                             deletionDetails,
                             "DOCUMENTO");
+                    deletionEvent.setSorgente(sorgente);
 
-                    eventLogRepository.save(deletionEvent);
-                    createdEvents++;
+                    deletionEvents.add(deletionEvent);
                     log.info("Documento {} non più presente su Alfresco: creato evento di eliminazione.", docId);
                 }
             }
         }
-        return createdEvents;
+        return deletionEvents;
     }
 }
@@ -0,0 +1,263 @@
+package com.reindex.report.service;
+
+import com.reindex.report.entity.EventLog;
+import com.reindex.report.repository.EventLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pipeline di scrittura differita degli eventi.
+ * I produttori (importazioni) accodano gli eventi in una coda limitata, che
+ * rallenta chi produce più velocemente di quanto si riesca a scrivere; un
+ * singolo thread li salva a blocchi, per dimensione o allo scadere
+ * dell'intervallo di flush, ciascuno in una propria transazione.
+ * Tutte le scritture su event_log passano da qui (blocchi accodati o
+ * {@link #writeExclusive}) e sono serializzate: i commit avvengono nello stesso
+ * ordine della sequenza di inserimento usata dal change feed.
+ */
+@Slf4j
+@Component
+public class EventWritePipeline {
+
+    private final EventLogRepository eventLogRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<PendingEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Thread writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile boolean running = true;
+    private volatile boolean stopped;
+
+    public EventWritePipeline(EventLogRepository eventLogRepository,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${report.pipeline.queue-capacity:10000}") int queueCapacity,
+            @Value("${report.pipeline.batch-size:500}") int batchSize,
+            @Value("${report.pipeline.flush-interval-ms:200}") long flushIntervalMs) {
+        this.eventLogRepository = eventLogRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+
+        Gauge.builder("report.events.queue.depth", queue, BlockingQueue::size)
+                .description("Eventi in attesa di scrittura")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("report.events.flush")
+                .description("Durata della scrittura di un blocco di eventi")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("report.events.written")
+                .description("Eventi scritti dalla pipeline")
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::runWriter, "event-writer");
+        this.writer.start();
+    }
+
+    /**
+     * Accoda gli eventi per la scrittura, attendendo se la coda è piena.
+     * Il future si completa con il numero di eventi quando sono stati tutti
+     * salvati, oppure fallisce se la pipeline viene arrestata prima.
+     */
+    public CompletableFuture<Integer> submit(List<EventLog> events) {
+        if (events.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        Ticket ticket = new Ticket(events.size());
+        try {
+            for (EventLog event : events) {
+                PendingEvent pending = new PendingEvent(event, ticket);
+                do {
+                    ensureRunning();
+                } while (!queue.offer(pending, flushIntervalMs, TimeUnit.MILLISECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrotto durante l'accodamento degli eventi", e);
+        }
+
+        // Il thread di scrittura può essere terminato dopo l'ultimo controllo: gli
+        // eventi rimasti in coda non verrebbero più salvati
+        if (stopped) {
+            failPending();
+        }
+        return ticket.future;
+    }
+
+    /**
+     * Esegue in una transazione dedicata una scrittura su event_log che non passa
+     * dalla coda (es. INSERT ... SELECT), senza sovrapporsi ai blocchi della
+     * pipeline. Restituisce il numero di eventi inseriti.
+     */
+    public int writeExclusive(TransactionCallback<Integer> work) {
+        ensureRunning();
+        int inserted;
+        writeLock.lock();
+        try {
+            Integer result = flushTimer.record(() -> transactionTemplate.execute(work));
+            inserted = result != null ? result : 0;
+        } finally {
+            writeLock.unlock();
+        }
+        if (inserted > 0) {
+            writtenCounter.increment(inserted);
+            eventPublisher.publishEvent(new EventsPersistedEvent(inserted));
+        }
+        return inserted;
+    }
+
+    /**
+     * Arresta la pipeline scrivendo prima tutti gli eventi ancora in coda.
+     * Viene chiamato dopo la chiusura dell'executor delle importazioni, che
+     * dipende da questo bean.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        log.info("Arresto pipeline di scrittura: {} eventi ancora in coda.", queue.size());
+        running = false;
+        writer.join();
+    }
+
+    private void ensureRunning() {
+        if (!running) {
+            throw new IllegalStateException("Pipeline di scrittura eventi arrestata");
+        }
+    }
+
+    private void runWriter() {
+        try {
+            writeUntilStopped();
+        } finally {
+            stopped = true;
+            failPending();
+        }
+        log.info("Pipeline di scrittura eventi arrestata.");
+    }
+
+    private void writeUntilStopped() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Attendiamo altri eventi fino a riempire il blocco o allo scadere
+                // dell'intervallo di flush
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                log.warn("Thread di scrittura eventi interrotto: {} eventi ancora in coda.", queue.size());
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Fa fallire le richieste degli eventi ancora in coda dopo l'arresto del
+     * thread di scrittura, così chi le attende non resta bloccato.
+     */
+    private void failPending() {
+        List<PendingEvent> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.warn("Pipeline di scrittura arrestata: {} eventi in coda non salvati.", pending.size());
+        IllegalStateException error = new IllegalStateException("Pipeline di scrittura eventi arrestata");
+        pending.forEach(p -> p.ticket().failed(error));
+    }
+
+    private void flush(List<PendingEvent> batch) {
+        List<EventLog> events = batch.stream().map(PendingEvent::event).toList();
+        writeLock.lock();
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(
+                    status -> eventLogRepository.saveAll(events)));
+        } catch (Exception e) {
+            log.error("Errore durante la scrittura di un blocco di {} eventi", events.size(), e);
+            batch.forEach(pending -> pending.ticket().failed(e));
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+
+        writtenCounter.increment(events.size());
+        batch.forEach(pending -> pending.ticket().written());
+        eventPublisher.publishEvent(new EventsPersistedEvent(events.size()));
+    }
+
+    private record PendingEvent(EventLog event, Ticket ticket) {
+    }
+
+    /**
+     * Tiene traccia degli eventi di una singola richiesta di scrittura.
+     */
+    private static final class Ticket {
+
+        private final int size;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        private Ticket(int size) {
+            this.size = size;
+            this.remaining = new AtomicInteger(size);
+        }
+
+        private void written() {
+            if (remaining.decrementAndGet() == 0) {
+                future.complete(size);
+            }
+        }
+
+        private void failed(Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.reindex.report.service;
+
+/**
+ * Evento applicativo pubblicato dopo il commit di nuovi eventi nella tabella
+ * event_log.
+ */
+public record EventsPersistedEvent(int count) {
+}
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,12 +24,18 @@ public class FileReportService {
 
     /**
      * Genera un report dei file contenuti nel nodo specificato.
+     * Se Alfresco non risponde restituisce un report vuoto.
      */
-    public List<FileReportDTO> getReports(String nodeId) {
-        log.info("Generazione report richiesta per il nodo: {}", nodeId);
+    public List<FileReportDTO> getReports(String sorgente, String nodeId) {
+        log.info("Generazione report richiesta per il nodo: {} ({})", nodeId, sorgente);
 
-        return alfrescoService.searchDocuments(nodeId).stream()
-                .map(alfrescoMapper::toReportDTO)
-                .collect(Collectors.toList());
+        try {
+            return alfrescoService.searchDocuments(sorgente, nodeId).stream()
+                    .map(alfrescoMapper::toReportDTO)
+                    .collect(Collectors.toList());
+        } catch (IllegalStateException e) {
+            log.warn("Report non disponibile per il nodo {} ({}): {}", nodeId, sorgente, e.getMessage());
+            return new ArrayList<>();
+        }
     }
 }
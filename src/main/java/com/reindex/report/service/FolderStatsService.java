@@ -0,0 +1,224 @@
+package com.reindex.report.service;
+
+import com.reindex.report.dto.FolderStatsDTO;
+import com.reindex.report.entity.DocumentState;
+import com.reindex.report.entity.FolderStats;
+import com.reindex.report.repository.DocumentStateRepository;
+import com.reindex.report.repository.FolderStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.alfresco.search.model.ResultNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Servizio per gli aggregati per cartella (numero documenti, dimensione totale,
+ * distribuzione dei mimeType e documenti in scadenza).
+ * Gli aggregati vengono aggiornati applicando solo le differenze rilevate ad
+ * ogni sincronizzazione rispetto all'ultimo stato noto dei documenti, che viene
+ * mantenuto anche per il passaggio di giorno (DayRolloverService).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FolderStatsService {
+
+    private final DocumentStateRepository documentStateRepository;
+    private final FolderStatsRepository folderStatsRepository;
+    private final AlfrescoMapper alfrescoMapper;
+
+    @Value("${report.folders.expiring-days:30}")
+    private int expiringDays;
+
+    /**
+     * Esito di una sincronizzazione: numero di documenti visti per la prima
+     * volta (da tracciare) e stato dei documenti non più presenti nel nodo.
+     */
+    public record SyncResult(int addedDocuments, List<DocumentState> removedDocuments) {
+    }
+
+    /**
+     * Confronta i documenti attualmente presenti in Alfresco con l'ultimo stato
+     * noto e applica agli aggregati delle cartelle coinvolte i documenti nuovi e
+     * modificati. I documenti non più presenti vengono solo restituiti: la loro
+     * rimozione ({@link #applyRemovals}) va salvata insieme agli eventi di
+     * eliminazione.
+     */
+    @Transactional
+    public SyncResult applySync(String sorgente, String nodeId, List<ResultNode> alfrescoNodes) {
+        Map<String, DocumentState> previousStates = documentStateRepository.findBySorgenteAndNodeId(sorgente, nodeId)
+                .stream()
+                .collect(Collectors.toMap(DocumentState::getDocumentId, Function.identity()));
+        Map<String, FolderStats> folders = folderStatsRepository.findBySorgenteAndNodeId(sorgente, nodeId).stream()
+                .collect(Collectors.toMap(FolderStats::getStruttura, Function.identity()));
+        Set<String> touchedFolders = new HashSet<>();
+        List<DocumentState> statesToSave = new ArrayList<>();
+        int addedDocuments = 0;
+
+        for (ResultNode node : alfrescoNodes) {
+            DocumentState current = alfrescoMapper.toDocumentState(sorgente, nodeId, node);
+            DocumentState previous = previousStates.remove(current.getDocumentId());
+
+            if (previous == null) {
+                // giorniTracciati resta vuoto: il passaggio di giorno lo ricava dagli
+                // eventi già registrati in event_log
+                applyDelta(folderFor(sorgente, nodeId, current.getStruttura(), folders, touchedFolders), current, 1);
+                statesToSave.add(current);
+                addedDocuments++;
+                continue;
+            }
+
+            current.setId(previous.getId());
+            current.setGiorniTracciati(previous.getGiorniTracciati());
+            if (!hasSameContribution(previous, current)) {
+                applyDelta(folderFor(sorgente, nodeId, previous.getStruttura(), folders, touchedFolders), previous, -1);
+                applyDelta(folderFor(sorgente, nodeId, current.getStruttura(), folders, touchedFolders), current, 1);
+                statesToSave.add(current);
+            } else if (!hasSameDetails(previous, current)) {
+                statesToSave.add(current);
+            }
+        }
+
+        documentStateRepository.saveAll(statesToSave);
+        saveFolders(folders, touchedFolders);
+
+        if (!statesToSave.isEmpty()) {
+            log.info("Stato documenti aggiornato per il nodo {} ({}): {} documenti variati, {} cartelle coinvolte.",
+                    nodeId, sorgente, statesToSave.size(), touchedFolders.size());
+        }
+
+        // I documenti rimasti non sono più presenti in Alfresco
+        return new SyncResult(addedDocuments, new ArrayList<>(previousStates.values()));
+    }
+
+    /**
+     * Rimuove lo stato dei documenti non più presenti nel nodo e li sottrae
+     * dagli aggregati delle loro cartelle, eliminando quelle rimaste vuote.
+     */
+    @Transactional
+    public void applyRemovals(String sorgente, String nodeId, List<DocumentState> removedStates) {
+        Map<String, FolderStats> folders = folderStatsRepository.findBySorgenteAndNodeId(sorgente, nodeId).stream()
+                .collect(Collectors.toMap(FolderStats::getStruttura, Function.identity()));
+        Set<String> touchedFolders = new HashSet<>();
+
+        for (DocumentState removed : removedStates) {
+            applyDelta(folderFor(sorgente, nodeId, removed.getStruttura(), folders, touchedFolders), removed, -1);
+        }
+
+        documentStateRepository.deleteAll(removedStates);
+        saveFolders(folders, touchedFolders);
+
+        log.info("Stato documenti aggiornato per il nodo {} ({}): {} documenti rimossi, {} cartelle coinvolte.",
+                nodeId, sorgente, removedStates.size(), touchedFolders.size());
+    }
+
+    /**
+     * Restituisce gli aggregati di tutte le cartelle del nodo leggendo i valori
+     * già calcolati.
+     */
+    @Transactional(readOnly = true)
+    public List<FolderStatsDTO> getFolderStats(String sorgente, String nodeId) {
+        LocalDate today = LocalDate.now();
+        LocalDate limit = today.plusDays(expiringDays);
+
+        return folderStatsRepository.findBySorgenteAndNodeIdOrderByStrutturaAsc(sorgente, nodeId).stream()
+                .map(folder -> new FolderStatsDTO(
+                        folder.getStruttura(),
+                        folder.getNumeroDocumenti(),
+                        folder.getDimensioneTotale(),
+                        folder.getMimeTypes(),
+                        countExpiring(folder.getScadenze(), today, limit)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Salva le cartelle coinvolte ed elimina quelle scese a zero documenti.
+     */
+    private void saveFolders(Map<String, FolderStats> folders, Set<String> touchedFolders) {
+        Map<Boolean, List<FolderStats>> partitioned = touchedFolders.stream()
+                .map(folders::get)
+                .collect(Collectors.partitioningBy(folder -> folder.getNumeroDocumenti() > 0));
+        folderStatsRepository.saveAll(partitioned.get(true));
+        folderStatsRepository.deleteAll(partitioned.get(false).stream()
+                .filter(folder -> folder.getId() != null)
+                .collect(Collectors.toList()));
+    }
+
+    private FolderStats folderFor(String sorgente, String nodeId, String struttura, Map<String, FolderStats> folders,
+            Set<String> touchedFolders) {
+        FolderStats folder = folders.computeIfAbsent(struttura, s -> FolderStats.builder()
+                .sorgente(sorgente)
+                .nodeId(nodeId)
+                .struttura(s)
+                .numeroDocumenti(0)
+                .dimensioneTotale(0L)
+                .mimeTypes(new HashMap<>())
+                .scadenze(new HashMap<>())
+                .build());
+        folder.setDataAggiornamento(LocalDateTime.now());
+        touchedFolders.add(struttura);
+        return folder;
+    }
+
+    private void applyDelta(FolderStats folder, DocumentState document, int sign) {
+        folder.setNumeroDocumenti(folder.getNumeroDocumenti() + sign);
+        if (document.getDimensione() != null) {
+            folder.setDimensioneTotale(folder.getDimensioneTotale() + sign * document.getDimensione());
+        }
+        folder.setMimeTypes(adjust(folder.getMimeTypes(), document.getMimeType(), sign));
+        folder.setScadenze(adjust(folder.getScadenze(),
+                document.getDataScadenza() != null ? document.getDataScadenza().toString() : null, sign));
+    }
+
+    /**
+     * Restituisce una copia dell'istogramma con il contatore della chiave
+     * aggiornato (la copia garantisce il rilevamento della modifica sul campo
+     * jsonb).
+     */
+    private Map<String, Integer> adjust(Map<String, Integer> histogram, String key, int sign) {
+        Map<String, Integer> updated = histogram != null ? new HashMap<>(histogram) : new HashMap<>();
+        if (key == null) {
+            return updated;
+        }
+        int value = updated.getOrDefault(key, 0) + sign;
+        if (value > 0) {
+            updated.put(key, value);
+        } else {
+            updated.remove(key);
+        }
+        return updated;
+    }
+
+    private boolean hasSameContribution(DocumentState a, DocumentState b) {
+        return Objects.equals(a.getStruttura(), b.getStruttura())
+                && Objects.equals(a.getMimeType(), b.getMimeType())
+                && Objects.equals(a.getDimensione(), b.getDimensione())
+                && Objects.equals(a.getDataScadenza(), b.getDataScadenza());
+    }
+
+    private boolean hasSameDetails(DocumentState a, DocumentState b) {
+        return Objects.equals(a.getUtente(), b.getUtente())
+                && Objects.equals(a.getNomeFile(), b.getNomeFile())
+                && Objects.equals(a.getDataCreazione(), b.getDataCreazione());
+    }
+
+    private int countExpiring(Map<String, Integer> scadenze, LocalDate from, LocalDate to) {
+        if (scadenze == null) {
+            return 0;
+        }
+        return scadenze.entrySet().stream()
+                .filter(entry -> {
+                    LocalDate date = LocalDate.parse(entry.getKey());
+                    return !date.isBefore(from) && !date.isAfter(to);
+                })
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+}
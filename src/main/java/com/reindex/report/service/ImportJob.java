@@ -0,0 +1,117 @@
+package com.reindex.report.service;
+
+import com.reindex.report.dto.ImportJobDTO;
+import lombok.Getter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Job di importazione asincrona per un nodo di una sorgente Alfresco.
+ * Raccoglie l'avanzamento riportato da EventLogService e notifica ogni
+ * variazione agli stream SSE registrati.
+ */
+@Getter
+public class ImportJob implements ImportProgressListener {
+
+    public enum Stato {
+        IN_CODA, IN_ESECUZIONE, COMPLETATO, FALLITO, ANNULLATO
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String sorgente;
+    private final String nodeId;
+    private final LocalDateTime dataAvvio = LocalDateTime.now();
+    private final CompletableFuture<Integer> completion = new CompletableFuture<>();
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger pagineRecuperate = new AtomicInteger();
+    private final AtomicInteger documentiRecuperati = new AtomicInteger();
+    private final AtomicInteger eventiScritti = new AtomicInteger();
+
+    private volatile Stato stato = Stato.IN_CODA;
+    private volatile String fase;
+    private volatile String errore;
+    private volatile LocalDateTime dataFine;
+    private volatile boolean cancelRequested;
+
+    private final Consumer<ImportJob> changeListener;
+
+    public ImportJob(String sorgente, String nodeId, Consumer<ImportJob> changeListener) {
+        this.sorgente = sorgente;
+        this.nodeId = nodeId;
+        this.changeListener = changeListener;
+    }
+
+    @Override
+    public void onPhase(String fase) {
+        this.fase = fase;
+        changeListener.accept(this);
+    }
+
+    @Override
+    public void onPageFetched(int documenti) {
+        pagineRecuperate.incrementAndGet();
+        documentiRecuperati.addAndGet(documenti);
+        changeListener.accept(this);
+    }
+
+    @Override
+    public void onEventsWritten(int eventi) {
+        eventiScritti.addAndGet(eventi);
+        changeListener.accept(this);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    public boolean isTerminated() {
+        return completion.isDone();
+    }
+
+    public void requestCancel() {
+        cancelRequested = true;
+    }
+
+    void markRunning() {
+        stato = Stato.IN_ESECUZIONE;
+        changeListener.accept(this);
+    }
+
+    void markCompleted(int eventiTotali) {
+        terminate(Stato.COMPLETATO, null);
+        completion.complete(eventiTotali);
+    }
+
+    void markCancelled() {
+        terminate(Stato.ANNULLATO, null);
+        completion.cancel(false);
+    }
+
+    void markFailed(Throwable cause) {
+        terminate(Stato.FALLITO, cause.getMessage());
+        completion.completeExceptionally(cause);
+    }
+
+    private void terminate(Stato finalStato, String messaggioErrore) {
+        this.stato = finalStato;
+        this.errore = messaggioErrore;
+        this.dataFine = LocalDateTime.now();
+    }
+
+    public ImportJobDTO toDTO() {
+        Integer eventiTotali = completion.isDone() && !completion.isCompletedExceptionally()
+                ? completion.join()
+                : null;
+        return new ImportJobDTO(id, sorgente, nodeId, stato.name(), fase, pagineRecuperate.get(),
+                documentiRecuperati.get(), eventiScritti.get(), eventiTotali, errore, dataAvvio, dataFine);
+    }
+}
@@ -0,0 +1,155 @@
+package com.reindex.report.service;
+
+import com.reindex.report.dto.ImportJobDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servizio per l'esecuzione asincrona delle importazioni.
+ * Ogni job gira sull'executor della propria sorgente Alfresco, così una
+ * sorgente lenta non sottrae thread alle altre. Le richieste concorrenti per
+ * lo stesso nodo vengono unite nel job già in corso; l'avanzamento è
+ * consultabile e trasmesso tramite Server-Sent Events.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportJobService {
+
+    private static final long SSE_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final long RETENTION_HOURS = 1;
+
+    private final EventLogService eventLogService;
+    private final AlfrescoSourceRegistry sourceRegistry;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ImportJob> activeJobsByNode = new ConcurrentHashMap<>();
+
+    /**
+     * Avvia l'importazione del nodo, oppure restituisce il job già attivo per lo
+     * stesso nodo della stessa sorgente.
+     */
+    public ImportJob submit(String sorgente, String nodeId) {
+        AlfrescoSource source = sourceRegistry.get(sorgente);
+        purgeTerminatedJobs();
+
+        String key = nodeKey(sorgente, nodeId);
+        ImportJob candidate = new ImportJob(sorgente, nodeId, this::publish);
+        ImportJob job = activeJobsByNode.compute(key,
+                (k, existing) -> existing != null && !existing.isTerminated() ? existing : candidate);
+
+        if (job != candidate) {
+            log.debug("Importazione già in corso per il nodo {} ({}): richiesta unita al job {}", nodeId, sorgente,
+                    job.getId());
+            return job;
+        }
+
+        jobs.put(job.getId(), job);
+        try {
+            source.getImportExecutor().execute(() -> run(job));
+            log.info("Job di importazione {} accodato per il nodo {} ({})", job.getId(), nodeId, sorgente);
+        } catch (TaskRejectedException e) {
+            log.error("Impossibile accodare l'importazione per il nodo {}: executor della sorgente {} saturo", nodeId,
+                    sorgente);
+            activeJobsByNode.remove(key, job);
+            job.markFailed(e);
+            publish(job);
+        }
+        return job;
+    }
+
+    public Optional<ImportJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Richiede l'annullamento del job: l'importazione si interrompe alla prima
+     * fase o pagina successiva.
+     */
+    public Optional<ImportJob> cancel(String jobId) {
+        Optional<ImportJob> job = getJob(jobId);
+        job.filter(j -> !j.isTerminated()).ifPresent(j -> {
+            log.info("Richiesto annullamento del job di importazione {} (nodo {})", jobId, j.getNodeId());
+            j.requestCancel();
+        });
+        return job;
+    }
+
+    /**
+     * Registra uno stream SSE sull'avanzamento del job. Lo stream viene chiuso al
+     * termine del job.
+     */
+    public Optional<SseEmitter> subscribe(String jobId) {
+        return getJob(jobId).map(job -> {
+            SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+            emitter.onCompletion(() -> job.getEmitters().remove(emitter));
+            emitter.onTimeout(() -> job.getEmitters().remove(emitter));
+            emitter.onError(e -> job.getEmitters().remove(emitter));
+            job.getEmitters().add(emitter);
+
+            // Stato iniziale (e chiusura immediata se il job è già terminato)
+            send(job, emitter, job.toDTO());
+            return emitter;
+        });
+    }
+
+    private void run(ImportJob job) {
+        String key = nodeKey(job.getSorgente(), job.getNodeId());
+        try {
+            job.checkCancelled();
+            job.markRunning();
+            int count = eventLogService.importEventsWithoutDuplicates(job.getSorgente(), job.getNodeId(), job);
+            activeJobsByNode.remove(key, job);
+            job.markCompleted(count);
+            log.info("Job di importazione {} completato: processati {} eventi per il nodo {}", job.getId(), count,
+                    job.getNodeId());
+        } catch (CancellationException e) {
+            activeJobsByNode.remove(key, job);
+            job.markCancelled();
+            log.info("Job di importazione {} annullato (nodo {})", job.getId(), job.getNodeId());
+        } catch (Exception e) {
+            activeJobsByNode.remove(key, job);
+            job.markFailed(e);
+            log.error("Errore critico durante l'importazione per il nodo {}: {}", job.getNodeId(), e.getMessage());
+        }
+        publish(job);
+    }
+
+    private void publish(ImportJob job) {
+        ImportJobDTO snapshot = job.toDTO();
+        job.getEmitters().forEach(emitter -> send(job, emitter, snapshot));
+    }
+
+    private void send(ImportJob job, SseEmitter emitter, ImportJobDTO snapshot) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(job.isTerminated() ? "terminato" : "progresso")
+                    .data(snapshot));
+            if (job.isTerminated()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            job.getEmitters().remove(emitter);
+        }
+    }
+
+    private String nodeKey(String sorgente, String nodeId) {
+        return sorgente + "/" + nodeId;
+    }
+
+    private void purgeTerminatedJobs() {
+        LocalDateTime limit = LocalDateTime.now().minusHours(RETENTION_HOURS);
+        jobs.values().removeIf(job -> job.isTerminated() && job.getDataFine() != null
+                && job.getDataFine().isBefore(limit));
+    }
+}
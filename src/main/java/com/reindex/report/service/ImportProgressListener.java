@@ -0,0 +1,38 @@
+package com.reindex.report.service;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Riceve l'avanzamento di una sincronizzazione e permette di interromperla tra
+ * una fase e l'altra.
+ */
+public interface ImportProgressListener {
+
+    /**
+     * Listener vuoto per le sincronizzazioni che non espongono avanzamento.
+     */
+    ImportProgressListener NONE = new ImportProgressListener() {
+    };
+
+    default void onPhase(String fase) {
+    }
+
+    default void onPageFetched(int documenti) {
+    }
+
+    default void onEventsWritten(int eventi) {
+    }
+
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Interrompe la sincronizzazione se è stato richiesto l'annullamento.
+     */
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Importazione annullata");
+        }
+    }
+}
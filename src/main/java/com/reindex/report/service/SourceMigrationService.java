@@ -0,0 +1,112 @@
+package com.reindex.report.service;
+
+import com.reindex.report.config.AlfrescoSourcesProperties;
+import com.reindex.report.repository.DocumentStateRepository;
+import com.reindex.report.repository.EventLogRepository;
+import com.reindex.report.repository.FolderStatsRepository;
+import com.reindex.report.repository.SyncHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Adeguamento all'avvio dei dati registrati prima del supporto a più
+ * repository Alfresco.
+ * Viene eseguito prima che partano le importazioni pianificate:
+ * - rimuove i vincoli di unicità originali, che non comprendono la sorgente;
+ * - se configurato 'alfresco.legacy-source', riassegna a quella sorgente i dati
+ * registrati come "default", che altrimenti non verrebbero più sincronizzati.
+ */
+@Slf4j
+@Service
+public class SourceMigrationService {
+
+    private final AlfrescoSourcesProperties properties;
+    private final AlfrescoSourceRegistry sourceRegistry;
+    private final EventWritePipeline eventWritePipeline;
+    private final TransactionTemplate transactionTemplate;
+    private final EventLogRepository eventLogRepository;
+    private final DocumentStateRepository documentStateRepository;
+    private final FolderStatsRepository folderStatsRepository;
+    private final SyncHistoryRepository syncHistoryRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public SourceMigrationService(AlfrescoSourcesProperties properties,
+            AlfrescoSourceRegistry sourceRegistry,
+            EventWritePipeline eventWritePipeline,
+            PlatformTransactionManager transactionManager,
+            EventLogRepository eventLogRepository,
+            DocumentStateRepository documentStateRepository,
+            FolderStatsRepository folderStatsRepository,
+            SyncHistoryRepository syncHistoryRepository) {
+        this.properties = properties;
+        this.sourceRegistry = sourceRegistry;
+        this.eventWritePipeline = eventWritePipeline;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventLogRepository = eventLogRepository;
+        this.documentStateRepository = documentStateRepository;
+        this.folderStatsRepository = folderStatsRepository;
+        this.syncHistoryRepository = syncHistoryRepository;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        transactionTemplate.executeWithoutResult(status -> dropLegacyUniqueConstraints());
+        reassignLegacySource();
+    }
+
+    private void dropLegacyUniqueConstraints() {
+        for (DocumentStateRepository.LegacyConstraint constraint : documentStateRepository
+                .findLegacyUniqueConstraints()) {
+            log.warn("Rimozione del vincolo di unicità {} su {}: non comprende la sorgente.",
+                    constraint.getVincolo(), constraint.getTabella());
+            entityManager.createNativeQuery("ALTER TABLE " + quote(constraint.getTabella())
+                    + " DROP CONSTRAINT " + quote(constraint.getVincolo()))
+                    .executeUpdate();
+        }
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    private void reassignLegacySource() {
+        String legacy = AlfrescoSourcesProperties.DEFAULT_SOURCE;
+        String target = properties.getLegacySource();
+        if (target == null || target.isBlank() || legacy.equals(target)) {
+            return;
+        }
+        if (sourceRegistry.getSourceNames().contains(legacy)) {
+            log.warn("alfresco.legacy-source ignorato: la sorgente '{}' è ancora configurata.", legacy);
+            return;
+        }
+        // Una sorgente inesistente è un errore di configurazione: l'avvio si interrompe
+        sourceRegistry.get(target);
+
+        if (!documentStateRepository.existsBySorgente(legacy) && !eventLogRepository.existsBySorgente(legacy)) {
+            return;
+        }
+        if (documentStateRepository.existsBySorgente(target)) {
+            // Lo stato dei documenti delle due sorgenti andrebbe in conflitto
+            log.warn("Dati '{}' non riassegnati: la sorgente '{}' è già stata sincronizzata.", legacy, target);
+            return;
+        }
+
+        eventWritePipeline.writeExclusive(status -> {
+            int events = eventLogRepository.reassignSource(legacy, target);
+            int documents = documentStateRepository.reassignSource(legacy, target);
+            folderStatsRepository.reassignSource(legacy, target);
+            syncHistoryRepository.reassignSource(legacy, target);
+            log.info("Dati '{}' riassegnati alla sorgente '{}': {} eventi, {} documenti.", legacy, target, events,
+                    documents);
+            // Nessun nuovo evento da notificare al change feed
+            return 0;
+        });
+    }
+}
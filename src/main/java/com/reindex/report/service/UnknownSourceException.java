@@ -0,0 +1,11 @@
+package com.reindex.report.service;
+
+/**
+ * Sorgente Alfresco richiesta non presente nella configurazione.
+ */
+public class UnknownSourceException extends RuntimeException {
+
+    public UnknownSourceException(String name) {
+        super("Sorgente Alfresco sconosciuta: " + name);
+    }
+}
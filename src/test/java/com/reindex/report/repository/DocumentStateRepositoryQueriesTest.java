@@ -0,0 +1,246 @@
+package com.reindex.report.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Esegue le query native su PostgreSQL: per il passaggio di giorno recupero dei
+ * giorni mancanti, documenti visti la prima volta come "Modificato Documento",
+ * limitazione per sorgente e nodo e tracciamento dei soli documenti nuovi; per
+ * l'avvio il riconoscimento dei vincoli di unicità originali.
+ */
+class DocumentStateRepositoryQueriesTest {
+
+    private static final LocalDate OGGI = LocalDate.of(2026, 3, 10);
+    // Creati 10 giorni fa: il giorno corrente è giorniTrascorsi = 10
+    private static final LocalDateTime CREAZIONE = OGGI.minusDays(10).atTime(9, 30);
+
+    private static final Class<?>[] TRACKING_PARAMETERS = {
+            LocalDate.class, Collection.class, String.class, boolean.class };
+
+    private static EmbeddedPostgres postgres;
+    private static NamedParameterJdbcTemplate jdbc;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbc = new NamedParameterJdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createSchema() {
+        execute("DROP TABLE IF EXISTS event_log, document_state, folder_stats");
+        execute("""
+                CREATE TABLE event_log (
+                    id varchar PRIMARY KEY, seq bigserial, sorgente varchar NOT NULL DEFAULT 'default',
+                    utente varchar, struttura varchar, data timestamp, evento varchar, dettagli jsonb,
+                    tipo_audit varchar)
+                """);
+        execute("""
+                CREATE TABLE document_state (
+                    id bigserial PRIMARY KEY, sorgente varchar NOT NULL DEFAULT 'default',
+                    node_id varchar NOT NULL, document_id varchar NOT NULL, struttura varchar,
+                    mime_type varchar, dimensione bigint, data_scadenza date, utente varchar,
+                    nome_file varchar, data_creazione timestamp, giorni_tracciati integer,
+                    UNIQUE (sorgente, node_id, document_id))
+                """);
+        execute("""
+                CREATE TABLE folder_stats (
+                    id bigserial PRIMARY KEY, sorgente varchar NOT NULL DEFAULT 'default',
+                    node_id varchar NOT NULL, struttura varchar NOT NULL,
+                    UNIQUE (sorgente, node_id, struttura))
+                """);
+    }
+
+    @Test
+    void missingDaysAreRecoveredFromEventLog() {
+        givenDocument("produzione", "node-1", "doc-1", null);
+        givenEvent("produzione", "doc-1", "Aggiunto Documento", 7);
+
+        int inserted = track(List.of("produzione"), "node-1", true);
+
+        assertThat(inserted).isEqualTo(3);
+        assertThat(trackedDays("produzione", "doc-1")).containsExactly(8, 9, 10);
+        assertThat(giorniTracciati("produzione", "doc-1")).isEqualTo(10);
+    }
+
+    @Test
+    void documentFirstSeenAsModifiedGetsOnlyToday() {
+        givenDocument("produzione", "node-1", "doc-1", null);
+        givenEvent("produzione", "doc-1", "Modificato Documento", null);
+
+        assertThat(track(List.of("produzione"), "node-1", true)).isEqualTo(1);
+        assertThat(trackedDays("produzione", "doc-1")).containsExactly(10);
+        assertThat(giorniTracciati("produzione", "doc-1")).isEqualTo(10);
+    }
+
+    @Test
+    void trackingIsIdempotent() {
+        givenDocument("produzione", "node-1", "doc-1", null);
+
+        track(List.of("produzione"), "node-1", true);
+
+        assertThat(track(List.of("produzione"), "node-1", false)).isZero();
+        assertThat(trackedDays("produzione", "doc-1")).containsExactly(10);
+    }
+
+    @Test
+    void untrackedOnlyLeavesTrackedDocumentsToTheRollover() {
+        givenDocument("produzione", "node-1", "doc-1", 8);
+        givenDocument("produzione", "node-1", "doc-2", null);
+
+        assertThat(track(List.of("produzione"), "node-1", true)).isEqualTo(1);
+        assertThat(trackedDays("produzione", "doc-1")).isEmpty();
+        assertThat(giorniTracciati("produzione", "doc-1")).isEqualTo(8);
+
+        // Il passaggio di giorno recupera i giorni dei documenti già tracciati
+        assertThat(track(List.of("produzione"), "", false)).isEqualTo(2);
+        assertThat(trackedDays("produzione", "doc-1")).containsExactly(9, 10);
+        assertThat(giorniTracciati("produzione", "doc-1")).isEqualTo(10);
+    }
+
+    @Test
+    void trackingIsLimitedToSourceAndNode() {
+        givenDocument("produzione", "node-1", "doc-1", null);
+        givenDocument("produzione", "node-2", "doc-2", null);
+        givenDocument("archivio", "node-1", "doc-1", null);
+        givenDocument("dismessa", "node-1", "doc-3", null);
+
+        assertThat(track(List.of("produzione"), "node-1", true)).isEqualTo(1);
+        assertThat(trackedDays("produzione", "doc-1")).containsExactly(10);
+        assertThat(trackedDays("produzione", "doc-2")).isEmpty();
+        assertThat(trackedDays("archivio", "doc-1")).isEmpty();
+        assertThat(giorniTracciati("archivio", "doc-1")).isNull();
+
+        // Tutti i nodi delle sorgenti configurate, mai le altre
+        assertThat(track(List.of("produzione", "archivio"), "", false)).isEqualTo(2);
+        assertThat(trackedDays("produzione", "doc-2")).containsExactly(10);
+        assertThat(trackedDays("archivio", "doc-1")).containsExactly(10);
+        assertThat(trackedDays("dismessa", "doc-3")).isEmpty();
+        assertThat(giorniTracciati("dismessa", "doc-3")).isNull();
+    }
+
+    @Test
+    void documentInSeveralNodesIsTrackedOnce() {
+        givenDocument("produzione", "node-1", "doc-1", 9);
+        givenDocument("produzione", "node-2", "doc-1", null);
+
+        // Riparte dal giorno già tracciato dall'altro nodo
+        assertThat(track(List.of("produzione"), "", false)).isEqualTo(1);
+        assertThat(trackedDays("produzione", "doc-1")).containsExactly(10);
+    }
+
+    @Test
+    void onlyTheOriginalUniqueConstraintsAreLegacy() {
+        execute("ALTER TABLE document_state ADD CONSTRAINT uk_documento_nodo UNIQUE (node_id, document_id)");
+        execute("ALTER TABLE folder_stats ADD CONSTRAINT uk_cartella_nodo UNIQUE (node_id, struttura)");
+        // Vincoli senza sorgente ma diversi dagli originali restano
+        execute("ALTER TABLE document_state ADD CONSTRAINT uk_documento UNIQUE (document_id, node_id, struttura)");
+        execute("ALTER TABLE folder_stats ADD CONSTRAINT uk_cartella UNIQUE (struttura)");
+
+        List<String> legacy = jdbc.query(query("findLegacyUniqueConstraints"),
+                (rs, row) -> rs.getString("tabella") + "." + rs.getString("vincolo"));
+
+        assertThat(legacy).containsExactly("document_state.uk_documento_nodo", "folder_stats.uk_cartella_nodo");
+    }
+
+    private int track(Collection<String> sorgenti, String nodeId, boolean soloNonTracciati) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("oggi", OGGI)
+                .addValue("sorgenti", sorgenti)
+                .addValue("nodeId", nodeId)
+                .addValue("soloNonTracciati", soloNonTracciati);
+        int inserted = jdbc.update(query("insertStatisticsEvents", TRACKING_PARAMETERS), params);
+        jdbc.update(query("advanceTrackedDays", TRACKING_PARAMETERS), params);
+        return inserted;
+    }
+
+    private static String query(String method, Class<?>... parameterTypes) {
+        try {
+            return DocumentStateRepository.class
+                    .getMethod(method, parameterTypes)
+                    .getAnnotation(Query.class)
+                    .value();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void givenDocument(String sorgente, String nodeId, String documentId, Integer giorniTracciati) {
+        jdbc.update("""
+                INSERT INTO document_state (sorgente, node_id, document_id, struttura, utente, nome_file,
+                                            data_creazione, data_scadenza, giorni_tracciati)
+                VALUES (:sorgente, :nodeId, :documentId, 'Folder_A', 'Mario Rossi (mrossi)', 'documento.pdf',
+                        :creazione, :scadenza, :giorniTracciati)
+                """, new MapSqlParameterSource()
+                .addValue("sorgente", sorgente)
+                .addValue("nodeId", nodeId)
+                .addValue("documentId", documentId)
+                .addValue("creazione", CREAZIONE)
+                .addValue("scadenza", OGGI.plusDays(80))
+                .addValue("giorniTracciati", giorniTracciati, Types.INTEGER));
+    }
+
+    private void givenEvent(String sorgente, String documentId, String evento, Integer giorniTrascorsi) {
+        jdbc.update("""
+                INSERT INTO event_log (id, sorgente, utente, struttura, data, evento, dettagli, tipo_audit)
+                VALUES (CAST(gen_random_uuid() AS varchar), :sorgente, 'Mario Rossi (mrossi)', 'Folder_A',
+                        :creazione, :evento,
+                        jsonb_strip_nulls(jsonb_build_object('id', CAST(:documentId AS varchar),
+                                'giorniTrascorsi', CAST(:giorni AS integer))),
+                        'DOCUMENTO')
+                """, new MapSqlParameterSource()
+                .addValue("sorgente", sorgente)
+                .addValue("creazione", CREAZIONE)
+                .addValue("evento", evento)
+                .addValue("documentId", documentId)
+                .addValue("giorni", giorniTrascorsi, Types.INTEGER));
+    }
+
+    private List<Integer> trackedDays(String sorgente, String documentId) {
+        return jdbc.queryForList("""
+                SELECT CAST(dettagli ->> 'giorniTrascorsi' AS integer)
+                FROM event_log
+                WHERE sorgente = :sorgente AND dettagli ->> 'id' = :documentId
+                  AND evento = 'Aggiornamento Statistiche'
+                  AND data > :creazione
+                ORDER BY seq
+                """, new MapSqlParameterSource()
+                .addValue("sorgente", sorgente)
+                .addValue("documentId", documentId)
+                .addValue("creazione", CREAZIONE), Integer.class);
+    }
+
+    private Integer giorniTracciati(String sorgente, String documentId) {
+        return jdbc.queryForObject("""
+                SELECT MAX(giorni_tracciati) FROM document_state
+                WHERE sorgente = :sorgente AND document_id = :documentId
+                """, new MapSqlParameterSource()
+                .addValue("sorgente", sorgente)
+                .addValue("documentId", documentId), Integer.class);
+    }
+
+    private static void execute(String sql) {
+        jdbc.getJdbcTemplate().execute(sql);
+    }
+}
@@ -0,0 +1,128 @@
+package com.reindex.report.service;
+
+import org.alfresco.search.model.Pagination;
+import org.alfresco.search.model.ResultNode;
+import org.alfresco.search.model.ResultSetPaging;
+import org.alfresco.search.model.ResultSetPagingList;
+import org.alfresco.search.model.ResultSetRowEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica la paginazione della ricerca: un elenco incompleto non deve mai
+ * essere restituito come completo.
+ */
+@ExtendWith(MockitoExtension.class)
+class AlfrescoServiceTest {
+
+    private static final String SORGENTE = "produzione";
+    private static final String NODE_ID = "node-1";
+
+    @Mock
+    private AlfrescoSourceRegistry sourceRegistry;
+    @Mock
+    private AlfrescoSource source;
+
+    @InjectMocks
+    private AlfrescoService alfrescoService;
+
+    // Pagine ricevute dal consumer
+    private final List<List<String>> consumed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(sourceRegistry.get(SORGENTE)).thenReturn(source);
+    }
+
+    @Test
+    void followsHasMoreItemsEvenWithShortPages() {
+        // Il server limita maxItems sotto la dimensione richiesta
+        givenPages(page(true, 5L, "doc-1", "doc-2"), page(true, 5L, "doc-3", "doc-4"), page(false, 5L, "doc-5"));
+
+        List<ResultNode> nodes = search();
+
+        assertThat(nodes).extracting(ResultNode::getId).containsExactly("doc-1", "doc-2", "doc-3", "doc-4", "doc-5");
+        assertThat(consumed).containsExactly(List.of("doc-1", "doc-2"), List.of("doc-3", "doc-4"), List.of("doc-5"));
+    }
+
+    @Test
+    void repeatedDocumentsAreReportedOnce() {
+        givenPages(page(true, 3L, "doc-1", "doc-2"), page(false, 3L, "doc-2", "doc-3"));
+
+        assertThat(search()).extracting(ResultNode::getId).containsExactly("doc-1", "doc-2", "doc-3");
+        assertThat(consumed).containsExactly(List.of("doc-1", "doc-2"), List.of("doc-3"));
+    }
+
+    @Test
+    void failureOnLaterPageIsRethrown() {
+        ResultSetPaging first = page(true, 4L, "doc-1", "doc-2");
+        when(source.call(any()))
+                .thenReturn(first)
+                .thenThrow(new IllegalStateException("Read timed out"));
+
+        assertThatThrownBy(this::search).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Read timed out");
+        assertThat(consumed).containsExactly(List.of("doc-1", "doc-2"));
+    }
+
+    @Test
+    void listingChangedDuringPagingIsRejected() {
+        givenPages(page(true, 4L, "doc-1", "doc-2"), page(false, 3L, "doc-4"));
+
+        assertThatThrownBy(this::search).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("modificato durante la paginazione");
+    }
+
+    @Test
+    void emptyPageWithMoreItemsIsRejected() {
+        givenPages(page(true, 4L, "doc-1", "doc-2"), page(true, 4L));
+
+        assertThatThrownBy(this::search).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void givenPages(ResultSetPaging first, ResultSetPaging... next) {
+        when(source.call(any())).thenReturn(first, (Object[]) next);
+    }
+
+    private List<ResultNode> search() {
+        return alfrescoService.searchDocuments(SORGENTE, NODE_ID,
+                page -> consumed.add(page.stream().map(ResultNode::getId).toList()));
+    }
+
+    private static ResultSetPaging page(boolean hasMoreItems, Long totalItems, String... ids) {
+        List<ResultSetRowEntry> entries = Arrays.stream(ids)
+                .map(id -> {
+                    ResultNode node = mock(ResultNode.class);
+                    lenient().when(node.getId()).thenReturn(id);
+                    ResultSetRowEntry entry = mock(ResultSetRowEntry.class);
+                    when(entry.getEntry()).thenReturn(node);
+                    return entry;
+                })
+                .toList();
+
+        Pagination pagination = mock(Pagination.class);
+        lenient().when(pagination.getHasMoreItems()).thenReturn(hasMoreItems);
+        lenient().when(pagination.getTotalItems()).thenReturn(totalItems);
+        ResultSetPagingList list = mock(ResultSetPagingList.class);
+        when(list.getEntries()).thenReturn(entries);
+        when(list.getPagination()).thenReturn(pagination);
+        ResultSetPaging response = mock(ResultSetPaging.class);
+        when(response.getList()).thenReturn(list);
+        return response;
+    }
+}
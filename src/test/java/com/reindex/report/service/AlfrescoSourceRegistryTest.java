@@ -0,0 +1,79 @@
+package com.reindex.report.service;
+
+import com.reindex.report.config.AlfrescoSourcesProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Verifica la configurazione delle sorgenti e la scelta della sorgente
+ * predefinita.
+ */
+class AlfrescoSourceRegistryTest {
+
+    private AlfrescoSourceRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void singleRepositoryConfigurationBecomesDefaultSource() {
+        registry = create(new AlfrescoSourcesProperties(), "node-1");
+
+        assertThat(registry.getSourceNames()).containsExactly(AlfrescoSourcesProperties.DEFAULT_SOURCE);
+        assertThat(registry.resolve(null).getNodeIds()).containsExactly("node-1");
+    }
+
+    @Test
+    void placeholderNodeIdIsIgnored() {
+        registry = create(new AlfrescoSourcesProperties(), "INSERISCI_QUI_IL_TUO_NODE_ID");
+
+        assertThat(registry.resolve(null).getNodeIds()).isEmpty();
+    }
+
+    @Test
+    void namedSourcesReplaceDefaultAndFirstIsUsedWithoutName() {
+        AlfrescoSourcesProperties properties = new AlfrescoSourcesProperties();
+        properties.getSources().put("produzione", source("http://produzione:8080", "node-1"));
+        properties.getSources().put("archivio", source("http://archivio:8080", "node-2"));
+        registry = create(properties, "node-legacy");
+
+        assertThat(registry.getSourceNames()).containsExactly("produzione", "archivio");
+        assertThat(registry.resolve(null).getName()).isEqualTo("produzione");
+        assertThat(registry.resolve(" ").getName()).isEqualTo("produzione");
+        assertThat(registry.resolve("archivio").getNodeIds()).containsExactly("node-2");
+        assertThat(registry.get("archivio").getImportExecutor())
+                .isNotSameAs(registry.get("produzione").getImportExecutor());
+    }
+
+    @Test
+    void unknownSourceIsRejected() {
+        registry = create(new AlfrescoSourcesProperties(), "node-1");
+
+        assertThatThrownBy(() -> registry.resolve("produzione")).isInstanceOf(UnknownSourceException.class)
+                .hasMessageContaining("produzione");
+    }
+
+    private static AlfrescoSourceRegistry create(AlfrescoSourcesProperties properties, String nodeId) {
+        return new AlfrescoSourceRegistry(properties, RestClient.builder(), "http://localhost:8080", "admin", "admin",
+                nodeId);
+    }
+
+    private static AlfrescoSourcesProperties.Source source(String url, String nodeId) {
+        AlfrescoSourcesProperties.Source source = new AlfrescoSourcesProperties.Source();
+        source.setUrl(url);
+        source.setUsername("admin");
+        source.setPassword("admin");
+        source.setNodeIds(List.of(nodeId));
+        return source;
+    }
+}
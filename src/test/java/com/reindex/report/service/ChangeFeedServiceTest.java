@@ -0,0 +1,168 @@
+package com.reindex.report.service;
+
+import com.reindex.report.dto.ChangeFeedDTO;
+import com.reindex.report.entity.EventLog;
+import com.reindex.report.repository.EventLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica la paginazione del change feed tramite cursore, i limiti delle
+ * richieste e il long-polling (risveglio e timeout).
+ */
+@ExtendWith(MockitoExtension.class)
+class ChangeFeedServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final long MAX_WAIT_MS = 30_000;
+
+    @Mock
+    private EventLogRepository eventLogRepository;
+
+    private ChangeFeedService changeFeedService;
+
+    @BeforeEach
+    void setUp() {
+        changeFeedService = new ChangeFeedService(eventLogRepository, MAX_BATCH_SIZE, MAX_WAIT_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeFeedService.shutdown();
+    }
+
+    @Test
+    void eventsAfterCursorAdvanceTheCursor() {
+        givenEvents(10, 5, events(11, 13));
+
+        ChangeFeedDTO page = resultOf(changeFeedService.poll(10, 5, 0));
+
+        assertThat(page.getEventi()).extracting(EventLog::getSeq).containsExactly(11L, 12L, 13L);
+        assertThat(page.getCursor()).isEqualTo(13);
+        assertThat(page.isAltriDisponibili()).isFalse();
+    }
+
+    @Test
+    void fullBatchSignalsMoreEvents() {
+        givenEvents(10, 2, events(11, 12));
+
+        ChangeFeedDTO page = resultOf(changeFeedService.poll(10, 2, 0));
+
+        assertThat(page.getCursor()).isEqualTo(12);
+        assertThat(page.isAltriDisponibili()).isTrue();
+    }
+
+    @Test
+    void emptyPageKeepsTheCursor() {
+        givenEvents(42, 5, List.of());
+
+        ChangeFeedDTO page = resultOf(changeFeedService.poll(42, 5, 0));
+
+        assertThat(page.getEventi()).isEmpty();
+        assertThat(page.getCursor()).isEqualTo(42);
+        assertThat(page.isAltriDisponibili()).isFalse();
+    }
+
+    @Test
+    void limitIsCappedToMaxBatchSize() {
+        givenEvents(0, MAX_BATCH_SIZE, List.of());
+        givenEvents(1, 1, List.of());
+
+        resultOf(changeFeedService.poll(0, 10_000, 0));
+        resultOf(changeFeedService.poll(1, 0, 0));
+
+        verify(eventLogRepository).findBySeqGreaterThanOrderBySeqAsc(0L, PageRequest.of(0, MAX_BATCH_SIZE));
+        verify(eventLogRepository).findBySeqGreaterThanOrderBySeqAsc(1L, PageRequest.of(0, 1));
+    }
+
+    @Test
+    void waitIsCappedToMaxWait() {
+        givenEvents(10, 5, List.of());
+
+        DeferredResult<ChangeFeedDTO> result = changeFeedService.poll(10, 5, 10 * MAX_WAIT_MS);
+
+        assertThat(ReflectionTestUtils.getField(result, "timeoutValue")).isEqualTo(MAX_WAIT_MS);
+        assertThat(result.hasResult()).isFalse();
+    }
+
+    @Test
+    void persistedEventsWakeUpWaitingRequests() {
+        when(eventLogRepository.findBySeqGreaterThanOrderBySeqAsc(eq(10L), any()))
+                .thenReturn(List.of())
+                .thenReturn(events(11, 11));
+
+        DeferredResult<ChangeFeedDTO> result = changeFeedService.poll(10, 5, 1_000);
+        assertThat(result.hasResult()).isFalse();
+
+        changeFeedService.onEventsPersisted(new EventsPersistedEvent(1));
+
+        assertThat(completion(result)).succeedsWithin(TIMEOUT).satisfies(page -> {
+            assertThat(page.getEventi()).extracting(EventLog::getSeq).containsExactly(11L);
+            assertThat(page.getCursor()).isEqualTo(11);
+        });
+    }
+
+    @Test
+    void timeoutReturnsEmptyPageWithSameCursor() throws Exception {
+        givenEvents(10, 5, List.of());
+
+        DeferredResult<ChangeFeedDTO> result = changeFeedService.poll(10, 5, 1_000);
+        // Simula la scadenza gestita da Spring MVC
+        DeferredResultProcessingInterceptor interceptor = ReflectionTestUtils.invokeMethod(result, "getInterceptor");
+        interceptor.handleTimeout(null, result);
+
+        ChangeFeedDTO page = resultOf(result);
+        assertThat(page.getEventi()).isEmpty();
+        assertThat(page.getCursor()).isEqualTo(10);
+        assertThat(page.isAltriDisponibili()).isFalse();
+    }
+
+    private void givenEvents(long cursor, int batchSize, List<EventLog> events) {
+        when(eventLogRepository.findBySeqGreaterThanOrderBySeqAsc(cursor, PageRequest.of(0, batchSize)))
+                .thenReturn(events);
+    }
+
+    private static ChangeFeedDTO resultOf(DeferredResult<ChangeFeedDTO> result) {
+        assertThat(result.hasResult()).isTrue();
+        return (ChangeFeedDTO) result.getResult();
+    }
+
+    private static CompletableFuture<ChangeFeedDTO> completion(DeferredResult<ChangeFeedDTO> result) {
+        CompletableFuture<ChangeFeedDTO> completion = new CompletableFuture<>();
+        result.setResultHandler(value -> completion.complete((ChangeFeedDTO) value));
+        return completion;
+    }
+
+    private static List<EventLog> events(long firstSeq, long lastSeq) {
+        return LongStream.rangeClosed(firstSeq, lastSeq)
+                .mapToObj(seq -> {
+                    EventLog event = new EventLog("Mario Rossi (mrossi)", "Folder_A", LocalDateTime.now(),
+                            "Aggiunto Documento", new HashMap<>(), "DOCUMENTO");
+                    event.setSeq(seq);
+                    return event;
+                })
+                .toList();
+    }
+}
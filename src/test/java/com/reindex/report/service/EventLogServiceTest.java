@@ -0,0 +1,167 @@
+package com.reindex.report.service;
+
+import com.reindex.report.entity.DocumentState;
+import com.reindex.report.entity.EventLog;
+import com.reindex.report.repository.EventLogRepository;
+import com.reindex.report.repository.SyncHistoryRepository;
+import org.alfresco.search.model.ResultNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica che un errore di Alfresco non venga scambiato per l'eliminazione
+ * dei documenti del nodo e che l'avanzamento sia notificato dal thread
+ * dell'importazione.
+ */
+@ExtendWith(MockitoExtension.class)
+class EventLogServiceTest {
+
+    private static final String SORGENTE = "produzione";
+    private static final String NODE_ID = "node-1";
+
+    @Mock
+    private AlfrescoService alfrescoService;
+    @Mock
+    private EventLogRepository eventLogRepository;
+    @Mock
+    private AlfrescoMapper alfrescoMapper;
+    @Mock
+    private SyncHistoryRepository syncHistoryRepository;
+    @Mock
+    private FolderStatsService folderStatsService;
+    @Mock
+    private EventWritePipeline eventWritePipeline;
+    @Mock
+    private DayRolloverService dayRolloverService;
+
+    @InjectMocks
+    private EventLogService eventLogService;
+
+    @Captor
+    private ArgumentCaptor<List<EventLog>> deletionEvents;
+
+    @Test
+    void failedSearchAbortsImportWithoutDiffing() {
+        when(alfrescoService.searchDocuments(eq(SORGENTE), eq(NODE_ID), any()))
+                .thenThrow(new IllegalStateException("Sorgente produzione: superato il limite di richieste contemporanee"));
+
+        assertThatThrownBy(() -> eventLogService.importEventsWithoutDuplicates(SORGENTE, NODE_ID))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(folderStatsService, never()).applySync(any(), any(), anyList());
+        verifyNoInteractions(eventWritePipeline, dayRolloverService, syncHistoryRepository);
+    }
+
+    @Test
+    void failedSearchGivesEmptyReadOnlyListing() {
+        when(alfrescoService.searchDocuments(SORGENTE, NODE_ID))
+                .thenThrow(new IllegalStateException("timeout"));
+
+        assertThat(eventLogService.getEventsFromAlfresco(SORGENTE, NODE_ID)).isEmpty();
+    }
+
+    @Test
+    void progressIsReportedFromTheImportThread() {
+        givenImportOf(new FolderStatsService.SyncResult(1, List.of()));
+
+        Thread importThread = Thread.currentThread();
+        List<Thread> notifiedFrom = new ArrayList<>();
+        int written = eventLogService.importEventsWithoutDuplicates(SORGENTE, NODE_ID, new ImportProgressListener() {
+            @Override
+            public void onEventsWritten(int eventi) {
+                notifiedFrom.add(Thread.currentThread());
+            }
+        });
+
+        assertThat(written).isEqualTo(1);
+        assertThat(notifiedFrom).containsExactly(importThread);
+        verify(dayRolloverService).trackNewDocuments(SORGENTE, NODE_ID);
+    }
+
+    @Test
+    void syncWithoutNewDocumentsSkipsTracking() {
+        givenImportOf(new FolderStatsService.SyncResult(0, List.of()));
+
+        eventLogService.importEventsWithoutDuplicates(SORGENTE, NODE_ID);
+
+        verify(dayRolloverService, never()).trackNewDocuments(any(), any());
+    }
+
+    @Test
+    void removalsAreWrittenWithDeletionEventsEvenIfCancelled() {
+        DocumentState removed = DocumentState.builder()
+                .sorgente(SORGENTE).nodeId(NODE_ID).documentId("doc-9").struttura("Folder_A").build();
+        givenImportOf(new FolderStatsService.SyncResult(0, List.of(removed)));
+        EventLog lastEvent = new EventLog("Mario Rossi (mrossi)", "Folder_A", LocalDateTime.now(),
+                "Aggiunto Documento", new HashMap<>(Map.of("id", "doc-9", "giorniTrascorsi", 3)), "DOCUMENTO");
+        when(eventLogRepository.findByDocumentIdOrderByDataDesc(eq(SORGENTE), eq("doc-9"), any()))
+                .thenReturn(List.of(lastEvent));
+        when(eventWritePipeline.writeExclusive(any())).thenAnswer(
+                invocation -> invocation.<TransactionCallback<Integer>>getArgument(0).doInTransaction(null));
+
+        // Annullamento richiesto dopo l'aggiornamento dello stato dei documenti
+        AtomicBoolean cancelled = new AtomicBoolean();
+        int written = eventLogService.importEventsWithoutDuplicates(SORGENTE, NODE_ID, new ImportProgressListener() {
+            @Override
+            public void onPhase(String fase) {
+                cancelled.compareAndSet(false, "AGGREGATI_CARTELLE".equals(fase));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        });
+
+        assertThat(written).isEqualTo(2);
+        verify(folderStatsService).applyRemovals(SORGENTE, NODE_ID, List.of(removed));
+        verify(eventLogRepository).saveAll(deletionEvents.capture());
+        assertThat(deletionEvents.getValue()).singleElement().satisfies(event -> {
+            assertThat(event.getEvento()).isEqualTo("Eliminato Documento");
+            assertThat(event.getSorgente()).isEqualTo(SORGENTE);
+            assertThat(event.getDettagli()).containsEntry("stato", "Eliminato").doesNotContainKey("giorniTrascorsi");
+        });
+    }
+
+    private void givenImportOf(FolderStatsService.SyncResult result) {
+        ResultNode node = mock(ResultNode.class);
+        when(alfrescoService.searchDocuments(eq(SORGENTE), eq(NODE_ID), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<List<ResultNode>>>getArgument(2).accept(List.of(node));
+            return List.of(node);
+        });
+        when(alfrescoMapper.toEntity(node)).thenReturn(new EventLog("Mario Rossi (mrossi)", "Folder_A",
+                LocalDateTime.now(), "Aggiunto Documento", new HashMap<>(), "DOCUMENTO"));
+        when(folderStatsService.applySync(eq(SORGENTE), eq(NODE_ID), anyList())).thenReturn(result);
+        // Il salvataggio si conclude su un altro thread, come nella pipeline
+        when(eventWritePipeline.submit(anyList())).thenAnswer(invocation -> {
+            int size = invocation.<List<EventLog>>getArgument(0).size();
+            return CompletableFuture.supplyAsync(() -> size);
+        });
+    }
+}
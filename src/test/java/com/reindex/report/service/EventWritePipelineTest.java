@@ -0,0 +1,133 @@
+package com.reindex.report.service;
+
+import com.reindex.report.entity.EventLog;
+import com.reindex.report.repository.EventLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Verifica la scrittura a blocchi della pipeline, la propagazione degli errori
+ * e l'arresto.
+ */
+@ExtendWith(MockitoExtension.class)
+class EventWritePipelineTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private EventLogRepository eventLogRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private EventWritePipeline pipeline;
+
+    // Dimensione di ogni blocco salvato
+    private final List<Integer> flushedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new EventWritePipeline(eventLogRepository, transactionManager, eventPublisher,
+                new SimpleMeterRegistry(), 100, 10, 20);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void submittedEventsAreWrittenInBatches() {
+        recordFlushes();
+
+        CompletableFuture<Integer> written = pipeline.submit(events(25));
+
+        assertThat(written).succeedsWithin(TIMEOUT).isEqualTo(25);
+        synchronized (flushedBatches) {
+            assertThat(flushedBatches).allMatch(size -> size <= 10);
+            assertThat(flushedBatches.stream().mapToInt(Integer::intValue).sum()).isEqualTo(25);
+        }
+        verify(eventPublisher, atLeastOnce()).publishEvent(any(EventsPersistedEvent.class));
+    }
+
+    @Test
+    void emptySubmissionCompletesImmediately() {
+        assertThat(pipeline.submit(List.of())).isCompletedWithValue(0);
+        verify(eventLogRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void failedFlushFailsTheSubmission() {
+        doThrow(new IllegalStateException("database non disponibile")).when(eventLogRepository).saveAll(anyList());
+
+        CompletableFuture<Integer> written = pipeline.submit(events(3));
+
+        assertThat(written).failsWithin(TIMEOUT);
+        verify(eventPublisher, never()).publishEvent(any(EventsPersistedEvent.class));
+    }
+
+    @Test
+    void shutdownWritesQueuedEvents() throws InterruptedException {
+        recordFlushes();
+
+        CompletableFuture<Integer> written = pipeline.submit(events(5));
+        pipeline.shutdown();
+
+        assertThat(written).isCompletedWithValue(5);
+    }
+
+    @Test
+    void submitAfterShutdownIsRejected() throws InterruptedException {
+        pipeline.shutdown();
+
+        assertThatThrownBy(() -> pipeline.submit(events(1))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void exclusiveWriteReturnsInsertedCount() {
+        assertThat(pipeline.writeExclusive(status -> 4)).isEqualTo(4);
+        verify(eventPublisher).publishEvent(any(EventsPersistedEvent.class));
+    }
+
+    private void recordFlushes() {
+        doAnswer(invocation -> {
+            synchronized (flushedBatches) {
+                flushedBatches.add(invocation.<List<EventLog>>getArgument(0).size());
+            }
+            return invocation.getArgument(0);
+        }).when(eventLogRepository).saveAll(anyList());
+    }
+
+    private static List<EventLog> events(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new EventLog("Mario Rossi (mrossi)", "Folder_A", LocalDateTime.now(),
+                        "Aggiunto Documento", new HashMap<>(), "DOCUMENTO"))
+                .toList();
+    }
+}
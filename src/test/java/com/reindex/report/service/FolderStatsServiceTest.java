@@ -0,0 +1,299 @@
+package com.reindex.report.service;
+
+import com.reindex.report.dto.FolderStatsDTO;
+import com.reindex.report.entity.DocumentState;
+import com.reindex.report.entity.FolderStats;
+import com.reindex.report.repository.DocumentStateRepository;
+import com.reindex.report.repository.FolderStatsRepository;
+import org.alfresco.search.model.ResultNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica l'applicazione delle differenze tra sincronizzazioni agli aggregati
+ * per cartella.
+ */
+@ExtendWith(MockitoExtension.class)
+class FolderStatsServiceTest {
+
+    private static final String SORGENTE = "default";
+    private static final String NODE_ID = "node-1";
+    private static final LocalDate SCADENZA = LocalDate.of(2030, 1, 15);
+
+    @Mock
+    private DocumentStateRepository documentStateRepository;
+    @Mock
+    private FolderStatsRepository folderStatsRepository;
+    @Mock
+    private AlfrescoMapper alfrescoMapper;
+
+    @InjectMocks
+    private FolderStatsService folderStatsService;
+
+    @Captor
+    private ArgumentCaptor<List<DocumentState>> savedStates;
+    @Captor
+    private ArgumentCaptor<Collection<DocumentState>> deletedStates;
+    @Captor
+    private ArgumentCaptor<List<FolderStats>> savedFolders;
+    @Captor
+    private ArgumentCaptor<List<FolderStats>> deletedFolders;
+
+    // Stato restituito dal mapper per ogni nodo Alfresco della sincronizzazione
+    private final Map<ResultNode, DocumentState> currentStates = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(folderStatsService, "expiringDays", 30);
+        lenient().when(alfrescoMapper.toDocumentState(eq(SORGENTE), eq(NODE_ID), any()))
+                .thenAnswer(invocation -> copy(currentStates.get(invocation.<ResultNode>getArgument(2))));
+    }
+
+    @Test
+    void newDocumentsAreAddedToTheirFolders() {
+        givenPrevious();
+        givenFolders();
+
+        FolderStatsService.SyncResult result = folderStatsService.applySync(SORGENTE, NODE_ID, List.of(
+                alfresco(state("doc-1", "Folder_A", "application/pdf", 100L, SCADENZA)),
+                alfresco(state("doc-2", "Folder_A", "text/plain", 50L, SCADENZA)),
+                alfresco(state("doc-3", "Folder_B", "application/pdf", 10L, null))));
+
+        assertThat(result.addedDocuments()).isEqualTo(3);
+        assertThat(result.removedDocuments()).isEmpty();
+        verify(documentStateRepository).saveAll(savedStates.capture());
+        assertThat(savedStates.getValue()).extracting(DocumentState::getDocumentId)
+                .containsExactlyInAnyOrder("doc-1", "doc-2", "doc-3");
+        // Il tracciamento dei nuovi documenti è ricavato dal passaggio di giorno
+        assertThat(savedStates.getValue()).extracting(DocumentState::getGiorniTracciati).containsOnlyNulls();
+
+        Map<String, FolderStats> folders = savedFolders();
+        assertThat(folders.get("Folder_A").getNumeroDocumenti()).isEqualTo(2);
+        assertThat(folders.get("Folder_A").getDimensioneTotale()).isEqualTo(150L);
+        assertThat(folders.get("Folder_A").getMimeTypes())
+                .containsExactlyInAnyOrderEntriesOf(Map.of("application/pdf", 1, "text/plain", 1));
+        assertThat(folders.get("Folder_A").getScadenze()).containsExactlyEntriesOf(Map.of(SCADENZA.toString(), 2));
+        assertThat(folders.get("Folder_B").getNumeroDocumenti()).isEqualTo(1);
+        assertThat(folders.get("Folder_B").getScadenze()).isEmpty();
+        assertThat(folders.values()).allMatch(folder -> SORGENTE.equals(folder.getSorgente())
+                && NODE_ID.equals(folder.getNodeId()));
+    }
+
+    @Test
+    void movedDocumentIsTransferredBetweenFolders() {
+        DocumentState previous = persisted(state("doc-1", "Folder_A", "application/pdf", 100L, SCADENZA), 1L);
+        previous.setGiorniTracciati(12);
+        givenPrevious(previous, persisted(state("doc-2", "Folder_A", "application/pdf", 20L, SCADENZA), 2L));
+        givenFolders(folder("Folder_A", 2, 120L, Map.of("application/pdf", 2), Map.of(SCADENZA.toString(), 2)));
+
+        FolderStatsService.SyncResult result = folderStatsService.applySync(SORGENTE, NODE_ID, List.of(
+                alfresco(state("doc-1", "Folder_B", "application/pdf", 100L, SCADENZA)),
+                alfresco(state("doc-2", "Folder_A", "application/pdf", 20L, SCADENZA))));
+
+        assertThat(result.addedDocuments()).isZero();
+        verify(documentStateRepository).saveAll(savedStates.capture());
+        assertThat(savedStates.getValue()).singleElement().satisfies(saved -> {
+            assertThat(saved.getId()).isEqualTo(1L);
+            assertThat(saved.getStruttura()).isEqualTo("Folder_B");
+            assertThat(saved.getGiorniTracciati()).isEqualTo(12);
+        });
+
+        Map<String, FolderStats> folders = savedFolders();
+        assertThat(folders.get("Folder_A").getNumeroDocumenti()).isEqualTo(1);
+        assertThat(folders.get("Folder_A").getDimensioneTotale()).isEqualTo(20L);
+        assertThat(folders.get("Folder_A").getMimeTypes()).containsExactlyEntriesOf(Map.of("application/pdf", 1));
+        assertThat(folders.get("Folder_B").getNumeroDocumenti()).isEqualTo(1);
+        assertThat(folders.get("Folder_B").getDimensioneTotale()).isEqualTo(100L);
+        assertThat(folders.get("Folder_B").getScadenze()).containsExactlyEntriesOf(Map.of(SCADENZA.toString(), 1));
+    }
+
+    @Test
+    void resizedDocumentUpdatesTotalSize() {
+        givenPrevious(persisted(state("doc-1", "Folder_A", "application/pdf", 100L, SCADENZA), 1L));
+        givenFolders(folder("Folder_A", 1, 100L, Map.of("application/pdf", 1), Map.of(SCADENZA.toString(), 1)));
+
+        folderStatsService.applySync(SORGENTE, NODE_ID, List.of(
+                alfresco(state("doc-1", "Folder_A", "application/pdf", 250L, SCADENZA))));
+
+        FolderStats folder = savedFolders().get("Folder_A");
+        assertThat(folder.getNumeroDocumenti()).isEqualTo(1);
+        assertThat(folder.getDimensioneTotale()).isEqualTo(250L);
+        assertThat(folder.getMimeTypes()).containsExactlyEntriesOf(Map.of("application/pdf", 1));
+        assertThat(folder.getScadenze()).containsExactlyEntriesOf(Map.of(SCADENZA.toString(), 1));
+    }
+
+    @Test
+    void removedDocumentsAreReturnedWithoutBeingApplied() {
+        DocumentState removed = persisted(state("doc-1", "Folder_A", "application/pdf", 100L, SCADENZA), 1L);
+        givenPrevious(removed, persisted(state("doc-2", "Folder_B", "text/plain", 30L, null), 2L));
+        givenFolders(folder("Folder_A", 1, 100L, Map.of("application/pdf", 1), Map.of(SCADENZA.toString(), 1)),
+                folder("Folder_B", 1, 30L, Map.of("text/plain", 1), Map.of()));
+
+        FolderStatsService.SyncResult result = folderStatsService.applySync(SORGENTE, NODE_ID, List.of(
+                alfresco(state("doc-2", "Folder_B", "text/plain", 30L, null))));
+
+        // La rimozione viene salvata insieme agli eventi di eliminazione
+        assertThat(result.removedDocuments()).containsExactly(removed);
+        verify(documentStateRepository, never()).deleteAll(any());
+        assertThat(savedFolders()).isEmpty();
+        verify(folderStatsRepository).deleteAll(deletedFolders.capture());
+        assertThat(deletedFolders.getValue()).isEmpty();
+    }
+
+    @Test
+    void removalsAreSubtractedAndEmptyFoldersDeleted() {
+        DocumentState removedA = persisted(state("doc-1", "Folder_A", "application/pdf", 100L, SCADENZA), 1L);
+        DocumentState removedB = persisted(state("doc-3", "Folder_B", "text/plain", 20L, null), 3L);
+        FolderStats folderA = folder("Folder_A", 1, 100L, Map.of("application/pdf", 1), Map.of(SCADENZA.toString(), 1));
+        folderA.setId(10L);
+        givenFolders(folderA, folder("Folder_B", 2, 50L, Map.of("text/plain", 2), Map.of()));
+
+        folderStatsService.applyRemovals(SORGENTE, NODE_ID, List.of(removedA, removedB));
+
+        verify(documentStateRepository).deleteAll(deletedStates.capture());
+        assertThat(deletedStates.getValue()).extracting(DocumentState::getDocumentId)
+                .containsExactlyInAnyOrder("doc-1", "doc-3");
+
+        Map<String, FolderStats> folders = savedFolders();
+        assertThat(folders).containsOnlyKeys("Folder_B");
+        assertThat(folders.get("Folder_B").getNumeroDocumenti()).isEqualTo(1);
+        assertThat(folders.get("Folder_B").getDimensioneTotale()).isEqualTo(30L);
+        assertThat(folders.get("Folder_B").getMimeTypes()).containsExactlyEntriesOf(Map.of("text/plain", 1));
+
+        // La cartella scesa a zero documenti viene eliminata
+        verify(folderStatsRepository).deleteAll(deletedFolders.capture());
+        assertThat(deletedFolders.getValue()).singleElement().satisfies(folder -> {
+            assertThat(folder.getStruttura()).isEqualTo("Folder_A");
+            assertThat(folder.getNumeroDocumenti()).isZero();
+            assertThat(folder.getMimeTypes()).isEmpty();
+            assertThat(folder.getScadenze()).isEmpty();
+        });
+    }
+
+    @Test
+    void unchangedDocumentsLeaveAggregatesUntouched() {
+        givenPrevious(persisted(state("doc-1", "Folder_A", "application/pdf", 100L, SCADENZA), 1L));
+        givenFolders(folder("Folder_A", 1, 100L, Map.of("application/pdf", 1), Map.of(SCADENZA.toString(), 1)));
+
+        FolderStatsService.SyncResult result = folderStatsService.applySync(SORGENTE, NODE_ID, List.of(
+                alfresco(state("doc-1", "Folder_A", "application/pdf", 100L, SCADENZA))));
+
+        assertThat(result.addedDocuments()).isZero();
+        assertThat(result.removedDocuments()).isEmpty();
+        verify(documentStateRepository).saveAll(savedStates.capture());
+        assertThat(savedStates.getValue()).isEmpty();
+        assertThat(savedFolders()).isEmpty();
+    }
+
+    @Test
+    void folderStatsCountOnlyDocumentsExpiringWithinWindow() {
+        LocalDate today = LocalDate.now();
+        FolderStats folder = folder("Folder_A", 4, 400L, Map.of("application/pdf", 4), Map.of(
+                today.minusDays(1).toString(), 1,
+                today.toString(), 1,
+                today.plusDays(30).toString(), 1,
+                today.plusDays(31).toString(), 1));
+        when(folderStatsRepository.findBySorgenteAndNodeIdOrderByStrutturaAsc(SORGENTE, NODE_ID))
+                .thenReturn(List.of(folder));
+
+        List<FolderStatsDTO> stats = folderStatsService.getFolderStats(SORGENTE, NODE_ID);
+
+        assertThat(stats).singleElement().satisfies(dto -> {
+            assertThat(dto.getStruttura()).isEqualTo("Folder_A");
+            assertThat(dto.getNumeroDocumenti()).isEqualTo(4);
+            assertThat(dto.getDocumentiInScadenza()).isEqualTo(2);
+        });
+    }
+
+    private void givenPrevious(DocumentState... states) {
+        when(documentStateRepository.findBySorgenteAndNodeId(SORGENTE, NODE_ID)).thenReturn(List.of(states));
+    }
+
+    private void givenFolders(FolderStats... folders) {
+        when(folderStatsRepository.findBySorgenteAndNodeId(SORGENTE, NODE_ID)).thenReturn(List.of(folders));
+    }
+
+    private Map<String, FolderStats> savedFolders() {
+        verify(folderStatsRepository).saveAll(savedFolders.capture());
+        return savedFolders.getValue().stream()
+                .collect(Collectors.toMap(FolderStats::getStruttura, folder -> folder));
+    }
+
+    private ResultNode alfresco(DocumentState state) {
+        ResultNode node = mock(ResultNode.class);
+        currentStates.put(node, state);
+        return node;
+    }
+
+    private static DocumentState state(String documentId, String struttura, String mimeType, Long dimensione,
+            LocalDate dataScadenza) {
+        return DocumentState.builder()
+                .sorgente(SORGENTE)
+                .nodeId(NODE_ID)
+                .documentId(documentId)
+                .struttura(struttura)
+                .mimeType(mimeType)
+                .dimensione(dimensione)
+                .dataScadenza(dataScadenza)
+                .utente("Mario Rossi (mrossi)")
+                .nomeFile(documentId + ".pdf")
+                .dataCreazione(dataScadenza != null ? dataScadenza.minusDays(365).atStartOfDay() : null)
+                .build();
+    }
+
+    private static DocumentState persisted(DocumentState state, Long id) {
+        state.setId(id);
+        return state;
+    }
+
+    private static DocumentState copy(DocumentState state) {
+        return DocumentState.builder()
+                .sorgente(state.getSorgente())
+                .nodeId(state.getNodeId())
+                .documentId(state.getDocumentId())
+                .struttura(state.getStruttura())
+                .mimeType(state.getMimeType())
+                .dimensione(state.getDimensione())
+                .dataScadenza(state.getDataScadenza())
+                .utente(state.getUtente())
+                .nomeFile(state.getNomeFile())
+                .dataCreazione(state.getDataCreazione())
+                .build();
+    }
+
+    private static FolderStats folder(String struttura, int numeroDocumenti, long dimensioneTotale,
+            Map<String, Integer> mimeTypes, Map<String, Integer> scadenze) {
+        return FolderStats.builder()
+                .sorgente(SORGENTE)
+                .nodeId(NODE_ID)
+                .struttura(struttura)
+                .numeroDocumenti(numeroDocumenti)
+                .dimensioneTotale(dimensioneTotale)
+                .mimeTypes(new HashMap<>(mimeTypes))
+                .scadenze(new HashMap<>(scadenze))
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.reindex.report.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica l'unione delle richieste di importazione concorrenti e gli stati
+ * finali dei job.
+ */
+@ExtendWith(MockitoExtension.class)
+class ImportJobServiceTest {
+
+    private static final String SORGENTE = "default";
+
+    @Mock
+    private EventLogService eventLogService;
+    @Mock
+    private AlfrescoSourceRegistry sourceRegistry;
+    @Mock
+    private ThreadPoolTaskExecutor importExecutor;
+
+    private ImportJobService importJobService;
+
+    // Job accodati sull'executor, eseguiti esplicitamente dal test
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        AlfrescoSource source = mock(AlfrescoSource.class);
+        lenient().when(source.getImportExecutor()).thenReturn(importExecutor);
+        lenient().when(sourceRegistry.get(any())).thenReturn(source);
+        lenient().doAnswer(invocation -> queued.add(invocation.getArgument(0)))
+                .when(importExecutor).execute(any(Runnable.class));
+        importJobService = new ImportJobService(eventLogService, sourceRegistry);
+    }
+
+    @Test
+    void concurrentRequestsForSameNodeShareTheJob() {
+        ImportJob first = importJobService.submit(SORGENTE, "node-1");
+        ImportJob second = importJobService.submit(SORGENTE, "node-1");
+
+        assertThat(second).isSameAs(first);
+        assertThat(queued).hasSize(1);
+        assertThat(importJobService.getJob(first.getId())).containsSame(first);
+    }
+
+    @Test
+    void differentNodesAndSourcesGetSeparateJobs() {
+        ImportJob first = importJobService.submit(SORGENTE, "node-1");
+        ImportJob otherNode = importJobService.submit(SORGENTE, "node-2");
+        ImportJob otherSource = importJobService.submit("archivio", "node-1");
+
+        assertThat(otherNode).isNotSameAs(first);
+        assertThat(otherSource).isNotSameAs(first).isNotSameAs(otherNode);
+        assertThat(queued).hasSize(3);
+    }
+
+    @Test
+    void completedJobIsNotReused() {
+        when(eventLogService.importEventsWithoutDuplicates(eq(SORGENTE), eq("node-1"), any())).thenReturn(7);
+
+        ImportJob first = importJobService.submit(SORGENTE, "node-1");
+        queued.remove(0).run();
+
+        assertThat(first.getStato()).isEqualTo(ImportJob.Stato.COMPLETATO);
+        assertThat(first.toDTO().getEventiTotali()).isEqualTo(7);
+        assertThat(first.getCompletion()).isCompletedWithValue(7);
+
+        ImportJob second = importJobService.submit(SORGENTE, "node-1");
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getStato()).isEqualTo(ImportJob.Stato.IN_CODA);
+    }
+
+    @Test
+    void failedImportEndsJobAsFailed() {
+        when(eventLogService.importEventsWithoutDuplicates(eq(SORGENTE), eq("node-1"), any()))
+                .thenThrow(new IllegalStateException("Alfresco non raggiungibile"));
+
+        ImportJob job = importJobService.submit(SORGENTE, "node-1");
+        queued.remove(0).run();
+
+        assertThat(job.getStato()).isEqualTo(ImportJob.Stato.FALLITO);
+        assertThat(job.getErrore()).isEqualTo("Alfresco non raggiungibile");
+        assertThat(job.getCompletion()).isCompletedExceptionally();
+        assertThat(importJobService.submit(SORGENTE, "node-1")).isNotSameAs(job);
+    }
+
+    @Test
+    void cancelledBeforeStartDoesNotImport() {
+        ImportJob job = importJobService.submit(SORGENTE, "node-1");
+        importJobService.cancel(job.getId());
+        queued.remove(0).run();
+
+        assertThat(job.getStato()).isEqualTo(ImportJob.Stato.ANNULLATO);
+        verify(eventLogService, never()).importEventsWithoutDuplicates(any(), any(), any());
+    }
+
+    @Test
+    void rejectedJobFailsAndReleasesTheNode() {
+        doThrow(new TaskRejectedException("saturo")).when(importExecutor).execute(any(Runnable.class));
+
+        ImportJob job = importJobService.submit(SORGENTE, "node-1");
+
+        assertThat(job.getStato()).isEqualTo(ImportJob.Stato.FALLITO);
+        assertThat(importJobService.submit(SORGENTE, "node-1")).isNotSameAs(job);
+    }
+}